@@ -0,0 +1,61 @@
+package org.wikimedia.search.extra.analysis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wikimedia.search.extra.analysis.esperanto.EsperantoStemmer;
+
+/**
+ * Time per token of {@link EsperantoStemmer#stemWord(String)}, and of stemming all the tokens
+ * at once with {@link EsperantoStemmer#stemWords(String[], String[])}. Run with
+ * {@code -prof gc} to also get the bytes allocated per token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EsperantoStemmerBenchmark {
+
+    static final int TOKENS = 10_000;
+
+    @Param({"eo", "eo_numerals", "long"})
+    public String wordList;
+
+    private final EsperantoStemmer stemmer = new EsperantoStemmer();
+    private String[] tokens;
+    private final String[] stems = new String[TOKENS];
+
+    @Setup
+    public void setup() {
+        tokens = WordLists.zipfSample(wordList, TOKENS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void stemWord(Blackhole blackhole) {
+        for (String token : tokens) {
+            blackhole.consume(stemmer.stemWord(token));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public String[] stemWords() {
+        stemmer.stemWords(tokens, stems);
+        return stems;
+    }
+}
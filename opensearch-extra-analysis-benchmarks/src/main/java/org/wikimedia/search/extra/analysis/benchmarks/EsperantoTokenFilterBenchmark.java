@@ -0,0 +1,23 @@
+package org.wikimedia.search.extra.analysis.benchmarks;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.Param;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.esperanto.EsperantoStemmerTokenFilter;
+
+public class EsperantoTokenFilterBenchmark extends TokenFilterBenchmark {
+
+    @Param({"eo", "eo_numerals", "long"})
+    public String wordList;
+
+    @Override
+    protected String wordList() {
+        return wordList;
+    }
+
+    @Override
+    protected TokenStream filter(TokenStream in, int memoSize, StemCache cache, FilterStats stats) {
+        return new EsperantoStemmerTokenFilter(in, memoSize, cache, false, stats);
+    }
+}
@@ -0,0 +1,23 @@
+package org.wikimedia.search.extra.analysis.benchmarks;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.Param;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.serbian.SerbianStemmerTokenFilter;
+
+public class SerbianTokenFilterBenchmark extends TokenFilterBenchmark {
+
+    @Param({"sr_latin", "sr_cyrillic", "sr_mixed", "long", "sr_numerals"})
+    public String wordList;
+
+    @Override
+    protected String wordList() {
+        return wordList;
+    }
+
+    @Override
+    protected TokenStream filter(TokenStream in, int memoSize, StemCache cache, FilterStats stats) {
+        return new SerbianStemmerTokenFilter(in, memoSize, cache, false, stats);
+    }
+}
@@ -0,0 +1,121 @@
+package org.wikimedia.search.extra.analysis.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+
+/**
+ * Time per token of a stemmer token filter behind a {@link StandardTokenizer}, including
+ * the tokenizer, with and without the per-filter memo, the node-wide stem cache and the
+ * analysis stats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class TokenFilterBenchmark {
+
+    static final int TOKENS = 10_000;
+
+    @Param({"0", "4096"})
+    public int memoSize;
+
+    @Param({"false", "true"})
+    public boolean stemCache;
+
+    @Param({"false", "true"})
+    public boolean stats;
+
+    private Analyzer analyzer;
+    private String text;
+
+    /** The name of the word list to sample the text from. */
+    protected abstract String wordList();
+
+    /** The stemmer token filter under test; {@code stats} is null when they aren't kept. */
+    protected abstract TokenStream filter(TokenStream in, int memoSize, StemCache cache, FilterStats stats);
+
+    @Setup
+    public void setup() throws IOException {
+        StemCache cache = stemCache ? StemCache.create(8L << 20) : null;
+        FilterStats filterStats = stats ? new FilterStats() : null;
+        analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new StandardTokenizer();
+                return new TokenStreamComponents(tokenizer, filter(tokenizer, memoSize, cache, filterStats));
+            }
+        };
+        // only words that the tokenizer keeps whole, so the text has exactly TOKENS tokens
+        text = String.join(" ", WordLists.zipfSample(wordList(), TOKENS, this::isSingleToken));
+        int tokens = consumeTokens(null);
+        if (tokens != TOKENS) {
+            throw new IllegalStateException("Expected " + TOKENS + " tokens but got " + tokens);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public int analyze(Blackhole blackhole) throws IOException {
+        return consumeTokens(blackhole);
+    }
+
+    /* Run the text through the analyzer, passing each term to the blackhole if there is one. */
+    private int consumeTokens(Blackhole blackhole) throws IOException {
+        int tokens = 0;
+        try (TokenStream ts = analyzer.tokenStream("text", new StringReader(text))) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                if (blackhole != null) blackhole.consume(termAtt);
+                tokens++;
+            }
+            ts.end();
+        }
+        return tokens;
+    }
+
+    private boolean isSingleToken(String word) {
+        try (Tokenizer tokenizer = new StandardTokenizer()) {
+            CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+            tokenizer.setReader(new StringReader(word));
+            tokenizer.reset();
+            boolean single = tokenizer.incrementToken() && word.contentEquals(termAtt)
+                    && !tokenizer.incrementToken();
+            tokenizer.end();
+            return single;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.wikimedia.search.extra.analysis.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Word lists for the benchmarks, and Zipf-distributed samples of them.
+ *
+ * <p>Each list (e.g., {@code sr_latin.txt}) has one word per line, most common first. Lines
+ * starting with # are comments.
+ */
+final class WordLists {
+
+    private WordLists() {
+    }
+
+    /** Load the words of the named list, most common first. */
+    static List<String> load(String name) {
+        String resource = name + ".txt";
+        try (InputStream stream = WordLists.class.getResourceAsStream(resource)) {
+            if (stream == null) throw new IllegalArgumentException("No word list named " + name);
+            List<String> words = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty() && !line.startsWith("#")) words.add(line);
+            }
+            return words;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read word list " + resource, e);
+        }
+    }
+
+    /**
+     * Draw tokens from the named list, the word of rank r with probability proportional to
+     * 1/r, as in running text. The seed is fixed, so every run sees the same tokens.
+     */
+    static String[] zipfSample(String name, int tokens) {
+        return zipfSample(name, tokens, word -> true);
+    }
+
+    /**
+     * Like {@link #zipfSample(String, int)}, but only drawing from the words that pass the
+     * filter.
+     */
+    static String[] zipfSample(String name, int tokens, Predicate<String> filter) {
+        List<String> words = new ArrayList<>();
+        for (String word : load(name)) {
+            if (filter.test(word)) words.add(word);
+        }
+        double[] cumulative = new double[words.size()];
+        double total = 0;
+        for (int rank = 1; rank <= cumulative.length; rank++) {
+            total += 1.0 / rank;
+            cumulative[rank - 1] = total;
+        }
+
+        Random random = new Random(42);
+        String[] sample = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            double target = random.nextDouble() * total;
+            int pos = Arrays.binarySearch(cumulative, target);
+            sample[i] = words.get(pos < 0 ? Math.min(-pos - 1, cumulative.length - 1) : pos);
+        }
+        return sample;
+    }
+}
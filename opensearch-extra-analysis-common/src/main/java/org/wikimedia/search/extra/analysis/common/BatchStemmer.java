@@ -0,0 +1,100 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stems arrays of words for offline jobs, where calling {@code stemWord()} in a loop would
+ * stem every repeat of a word again and allocate a buffer for each one.
+ *
+ * <p>Each slice of {@value #SLICE_SIZE} words is stemmed with a single buffer, and stems each
+ * distinct word once. Larger inputs are split into slices that run on a {@link ForkJoinPool}.
+ * The stemmer is shared by the slices, so it must be thread safe.
+ */
+public final class BatchStemmer {
+
+    /** Number of words stemmed by a single task. */
+    static final int SLICE_SIZE = 4096;
+
+    private BatchStemmer() {
+    }
+
+    /**
+     * Stem {@code words} into {@code stems}, on the common pool. Null words get null stems.
+     *
+     * @param stems where to write the stem of each word, at the same index
+     * @throws IllegalArgumentException if {@code stems} is shorter than {@code words}
+     */
+    public static void stemAll(InPlaceStemmer stemmer, String[] words, String[] stems) {
+        stemAll(stemmer, words, stems, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Stem {@code words} into {@code stems}, on the given pool. Null words get null stems.
+     *
+     * @param stems where to write the stem of each word, at the same index
+     * @throws IllegalArgumentException if {@code stems} is shorter than {@code words}
+     */
+    public static void stemAll(InPlaceStemmer stemmer, String[] words, String[] stems, ForkJoinPool pool) {
+        if (stems.length < words.length) {
+            throw new IllegalArgumentException(
+                    "Room for " + stems.length + " stems, but got " + words.length + " words");
+        }
+        StemTask task = new StemTask(stemmer, words, stems, 0, words.length);
+        if (words.length <= SLICE_SIZE) {
+            // not worth a trip through the pool
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static final class StemTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient InPlaceStemmer stemmer;
+        private final String[] words;
+        private final String[] stems;
+        private final int from;
+        private final int to;
+
+        StemTask(InPlaceStemmer stemmer, String[] words, String[] stems, int from, int to) {
+            this.stemmer = stemmer;
+            this.words = words;
+            this.stems = stems;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SLICE_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StemTask(stemmer, words, stems, from, mid),
+                        new StemTask(stemmer, words, stems, mid, to));
+                return;
+            }
+            Map<String, String> known = new HashMap<>();
+            char[] buffer = new char[0];
+            for (int i = from; i < to; i++) {
+                String word = words[i];
+                if (word == null) {
+                    stems[i] = null;
+                    continue;
+                }
+                String stem = known.get(word);
+                if (stem == null) {
+                    int length = word.length();
+                    int bufferLength = stemmer.bufferLength(length);
+                    if (buffer.length < bufferLength) buffer = new char[bufferLength];
+                    word.getChars(0, length, buffer, 0);
+                    stem = new String(buffer, 0, stemmer.stem(buffer, length));
+                    known.put(word, stem);
+                }
+                stems[i] = stem;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.wikimedia.search.extra.analysis.common;
+
+/**
+ * Sorts the chars of a word into classes, like digits, vowels or the letters of a script, in a
+ * single pass. A stemmer classifies a word up front and then skips the steps that can't apply
+ * to it, instead of scanning the word again in each of them.
+ *
+ * <p>Each class is a bit, chosen by the stemmer, and the classes of a word are the union of
+ * those of its chars. Chars up to {@code U+052F} (Latin, Greek and Cyrillic) are looked up in a
+ * table; all other chars share one set of classes.
+ */
+public final class CharClassifier {
+
+    /** Chars below this are looked up in the table. */
+    private static final int TABLE_SIZE = 0x530;
+
+    /** The classes fit in a byte, to keep the table small. */
+    private static final int MAX_CLASSES = 0xFF;
+
+    /** The lowercase form of each char in the table. */
+    private static final char[] LOWERCASE = new char[TABLE_SIZE];
+
+    static {
+        for (int ch = 0; ch < TABLE_SIZE; ch++) {
+            LOWERCASE[ch] = Character.toLowerCase((char) ch);
+        }
+    }
+
+    private final byte[] table;
+    private final int otherClasses;
+
+    private CharClassifier(byte[] table, int otherClasses) {
+        this.table = table;
+        this.otherClasses = otherClasses;
+    }
+
+    /**
+     * The union of the classes of the first {@code length} chars of the buffer.
+     */
+    public int classify(char[] buffer, int length) {
+        int classes = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = buffer[i];
+            classes |= ch < TABLE_SIZE ? table[ch] & MAX_CLASSES : otherClasses;
+        }
+        return classes;
+    }
+
+    /**
+     * Lowercase the first {@code length} chars of the buffer in place, as Lucene's
+     * {@code LowerCaseFilter} does, and return the union of the classes of the lowercased chars,
+     * all in the same pass.
+     */
+    public int lowercaseAndClassify(char[] buffer, int length) {
+        int classes = 0;
+        for (int i = 0; i < length;) {
+            char ch = buffer[i];
+            if (Character.isHighSurrogate(ch)) {
+                // supplementary chars lowercase to supplementary chars, all in the other classes
+                i += Character.toChars(Character.toLowerCase(Character.codePointAt(buffer, i, length)), buffer, i);
+                classes |= otherClasses;
+                continue;
+            }
+            char lower = ch < TABLE_SIZE ? LOWERCASE[ch] : Character.toLowerCase(ch);
+            buffer[i++] = lower;
+            classes |= lower < TABLE_SIZE ? table[lower] & MAX_CLASSES : otherClasses;
+        }
+        return classes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final byte[] table = new byte[TABLE_SIZE];
+        private int otherClasses;
+
+        private Builder() {
+        }
+
+        /**
+         * Add the classes to each of the chars.
+         */
+        public Builder add(int classes, String chars) {
+            for (int i = 0; i < chars.length(); i++) {
+                add(classes, chars.charAt(i), chars.charAt(i));
+            }
+            return this;
+        }
+
+        /**
+         * Add the classes to the chars from {@code first} to {@code last}, inclusive.
+         */
+        public Builder add(int classes, char first, char last) {
+            checkClasses(classes);
+            if (last >= TABLE_SIZE) {
+                throw new IllegalArgumentException("Only chars below U+" + Integer.toHexString(TABLE_SIZE)
+                        + " can be classified one by one, not U+" + Integer.toHexString(last));
+            }
+            for (int ch = first; ch <= last; ch++) {
+                table[ch] |= (byte) classes;
+            }
+            return this;
+        }
+
+        /**
+         * Add the classes to all chars from {@code U+0530} on.
+         */
+        public Builder addOther(int classes) {
+            checkClasses(classes);
+            otherClasses |= classes;
+            return this;
+        }
+
+        public CharClassifier build() {
+            return new CharClassifier(table.clone(), otherClasses);
+        }
+
+        private static void checkClasses(int classes) {
+            if ((classes & ~MAX_CLASSES) != 0) {
+                throw new IllegalArgumentException("Classes must fit in 8 bits, not 0x" + Integer.toHexString(classes));
+            }
+        }
+    }
+}
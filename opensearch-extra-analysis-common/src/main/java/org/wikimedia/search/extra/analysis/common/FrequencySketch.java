@@ -0,0 +1,93 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate access counts for the admission policy of {@link StemCache}: a count-min
+ * sketch with four 4-bit counters per key, as in TinyLFU. Once enough increments have been
+ * recorded, all counters are halved, so that the counts reflect recent popularity.
+ *
+ * <p>Only one thread increments at a time, draining the {@link ReadBuffer} of the cache, so the
+ * counters are updated without compare-and-set loops. Frequencies can be read concurrently.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param capacity the number of entries in the cache this sketch is for
+     */
+    FrequencySketch(int capacity) {
+        int length = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        table = new AtomicLongArray(length);
+        tableMask = length - 1;
+        sampleSize = 10 * length;
+    }
+
+    /** The estimated number of recent increments for the hash, 0 to 15. */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, count(table.get(index(hash, i)), offset(hash, i)));
+        }
+        return frequency;
+    }
+
+    /** Record an occurrence of the hash. Only one thread may call this at a time. */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(index(hash, i), offset(hash, i));
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        long value = table.get(index);
+        if ((value & mask) == mask) return false;
+        table.set(index, value + (1L << offset));
+        return true;
+    }
+
+    /* Halve every counter. */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length(); i++) {
+            long value = table.get(i);
+            table.set(i, (value >>> 1) & RESET_MASK);
+            odd += Long.bitCount(value & ONE_MASK);
+        }
+        // halving rounds odd counts down, so take those off the total, too
+        size = Math.max(0, (size - (odd >>> 2)) >>> 1);
+    }
+
+    private int index(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /* Bit offset of one of the 16 counters in a long, picked by a different part of the hash
+     * for each row.
+     */
+    private static int offset(int hash, int i) {
+        return ((hash >>> (i << 3)) & 0xf) << 2;
+    }
+
+    private static int count(long value, int offset) {
+        return (int) ((value >>> offset) & 0xf);
+    }
+}
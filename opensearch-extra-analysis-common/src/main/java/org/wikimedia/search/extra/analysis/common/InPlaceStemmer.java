@@ -0,0 +1,23 @@
+package org.wikimedia.search.extra.analysis.common;
+
+/**
+ * A stemmer that stems a word in a char buffer, like the term buffer of a token.
+ *
+ * <p>Implementations must be thread safe, so that {@link BatchStemmer} can share them between
+ * threads.
+ */
+public interface InPlaceStemmer {
+
+    /**
+     * The buffer size needed to stem a word of the given length in place.
+     */
+    int bufferLength(int length);
+
+    /**
+     * Stem the word at the start of the buffer, which must be at least
+     * {@link #bufferLength(int) bufferLength(length)} chars long.
+     *
+     * @return the length of the stem, now at the start of the buffer
+     */
+    int stem(char[] buffer, int length);
+}
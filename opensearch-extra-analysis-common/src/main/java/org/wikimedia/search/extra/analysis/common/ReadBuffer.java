@@ -0,0 +1,74 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hashes of {@link StemCache} reads on their way to its {@link FrequencySketch}. As in
+ * W-TinyLFU, each thread records its reads in one of several small ring buffers, picked by its
+ * thread id, and the buffers are drained into the sketch in batches by one thread at a time.
+ * Cache hits on different threads thus don't all update the same sketch counters. A read is
+ * dropped when its buffer is full, which only makes the frequency estimates a little coarser.
+ */
+final class ReadBuffer {
+
+    /** Number of reads each stripe holds. */
+    static final int SIZE = 32;
+    /** Longs between the counters of two stripes, so that they are on different cache lines. */
+    private static final int PAD = 16;
+    /** Set on every recorded hash, so that a slot that is 0 is known to be empty. */
+    private static final long PRESENT = 1L << 32;
+
+    private final int stripeMask;
+    /** At {@code stripe * PAD}, the number of reads written to the stripe; right after, the number drained. */
+    private final AtomicLongArray counters;
+    /** {@link #SIZE} slots per stripe, each holding a hash with {@link #PRESENT} set, or 0. */
+    private final AtomicLongArray slots;
+
+    /**
+     * @param stripes the number of ring buffers, rounded down to a power of 2
+     */
+    ReadBuffer(int stripes) {
+        int length = Integer.highestOneBit(Math.max(1, stripes));
+        stripeMask = length - 1;
+        counters = new AtomicLongArray(length * PAD);
+        slots = new AtomicLongArray(length * SIZE);
+    }
+
+    /**
+     * Record a read of the hash.
+     *
+     * @return whether the calling thread's buffer is full, so it is time to drain
+     */
+    boolean record(int hash) {
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        int counter = stripe * PAD;
+        long written = counters.get(counter);
+        long pending = written - counters.get(counter + 1);
+        if (pending >= SIZE) return true;
+        // on a race with another thread on the same stripe, just drop the read
+        if (counters.compareAndSet(counter, written, written + 1)) {
+            slots.lazySet(stripe * SIZE + (int) (written & (SIZE - 1)), PRESENT | (hash & 0xffffffffL));
+        }
+        return pending + 1 >= SIZE;
+    }
+
+    /**
+     * Add every recorded read to the sketch. Only one thread may drain at a time.
+     */
+    void drainTo(FrequencySketch sketch) {
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int counter = stripe * PAD;
+            long written = counters.get(counter);
+            long drained = counters.get(counter + 1);
+            for (; drained < written; drained++) {
+                int slot = stripe * SIZE + (int) (drained & (SIZE - 1));
+                long value = slots.get(slot);
+                // claimed by a writer that hasn't stored the hash yet; pick it up next time
+                if (value == 0) break;
+                slots.lazySet(slot, 0);
+                sketch.increment((int) value);
+            }
+            counters.lazySet(counter + 1, drained);
+        }
+    }
+}
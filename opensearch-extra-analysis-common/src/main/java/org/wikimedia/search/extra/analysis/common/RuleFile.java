@@ -0,0 +1,143 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The text form of a stemmer's rules, as shipped with the plugin or given with a filter's
+ * {@value #PATH_SETTING} setting.
+ *
+ * <p>A rule file is UTF-8 text. The first line is {@code version <n>}, and the rest is made of
+ * sections, each starting with a {@code [name]} line and holding one entry per line. Entries
+ * with several fields separate them with tabs. Blank lines and lines starting with # are
+ * ignored. For example:
+ * <pre>
+ *   version 1
+ *
+ *   [stop_words]
+ *   biti
+ *
+ *   [transformations]
+ *   lozi	loga
+ * </pre>
+ */
+public final class RuleFile {
+
+    /** Name of the token filter setting for an alternate rule file, relative to the config dir. */
+    public static final String PATH_SETTING = "rules_path";
+
+    private final String source;
+    private final Map<String, List<String[]>> sections;
+
+    private RuleFile(String source, Map<String, List<String[]>> sections) {
+        this.source = source;
+        this.sections = sections;
+    }
+
+    /**
+     * Parse a rule file, checking that it is in the expected version of the format and that it
+     * has exactly the expected sections.
+     *
+     * @param reader the rule file
+     * @param source where the rules come from, for error messages
+     * @param version the version of the format the caller understands
+     * @param sectionNames the sections the caller expects
+     * @throws IllegalArgumentException if the file is malformed
+     */
+    public static RuleFile parse(BufferedReader reader, String source, int version, String... sectionNames)
+            throws IOException {
+        Map<String, List<String[]>> sections = new LinkedHashMap<>();
+        for (String name : sectionNames) {
+            sections.put(name, new ArrayList<>());
+        }
+        Set<String> seen = new HashSet<>();
+        List<String[]> current = null;
+        boolean sawVersion = false;
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (!sawVersion) {
+                if (!line.equals("version " + version)) {
+                    throw error(source, lineNumber, "expected [version " + version + "] but got [" + line + "]");
+                }
+                sawVersion = true;
+            } else if (line.startsWith("[") && line.endsWith("]")) {
+                String name = line.substring(1, line.length() - 1);
+                current = sections.get(name);
+                if (current == null) {
+                    throw error(source, lineNumber, "unknown section " + line);
+                }
+                if (!seen.add(name)) {
+                    throw error(source, lineNumber, "duplicate section " + line);
+                }
+            } else if (current == null) {
+                throw error(source, lineNumber, "entry before the first section");
+            } else {
+                current.add(line.split("\t", -1));
+            }
+        }
+        if (!sawVersion) {
+            throw error(source, lineNumber, "no version line");
+        }
+        return new RuleFile(source, sections);
+    }
+
+    /**
+     * The entries of a section, each with the given number of fields.
+     *
+     * @throws IllegalArgumentException if an entry has a different number of fields
+     */
+    public List<String[]> entries(String section, int fields) {
+        List<String[]> entries = sections.get(section);
+        if (entries == null) {
+            throw new IllegalArgumentException("No section [" + section + "] in " + source);
+        }
+        for (String[] entry : entries) {
+            if (entry.length != fields) {
+                throw new IllegalArgumentException("Expected " + fields + " field(s) per entry in section ["
+                        + section + "] of " + source + " but got " + Arrays.toString(entry));
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * The entries of a section of single words.
+     */
+    public List<String> words(String section) {
+        List<String> words = new ArrayList<>();
+        for (String[] entry : entries(section, 1)) {
+            words.add(entry[0]);
+        }
+        return words;
+    }
+
+    /**
+     * The entries of a section of key and value pairs, in order.
+     *
+     * @throws IllegalArgumentException if a key is repeated
+     */
+    public Map<String, String> pairs(String section) {
+        Map<String, String> pairs = new LinkedHashMap<>();
+        for (String[] entry : entries(section, 2)) {
+            if (pairs.put(entry[0], entry[1]) != null) {
+                throw new IllegalArgumentException(
+                        "Duplicate key [" + entry[0] + "] in section [" + section + "] of " + source);
+            }
+        }
+        return pairs;
+    }
+
+    private static IllegalArgumentException error(String source, int lineNumber, String message) {
+        return new IllegalArgumentException("Invalid rule file " + source + " at line " + lineNumber + ": " + message);
+    }
+}
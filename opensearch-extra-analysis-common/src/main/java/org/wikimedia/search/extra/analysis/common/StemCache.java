@@ -0,0 +1,224 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A node-wide cache of words and their stems, shared by every filter instance of one
+ * stemmer across all indices. It sits behind each filter's own {@link StemMemo}.
+ *
+ * <p>The layout follows W-TinyLFU. New entries always go into a small direct-mapped
+ * window. An entry pushed out of the window is only admitted to the main table if it has
+ * been seen more often recently than the entry it would replace, according to a
+ * {@link FrequencySketch}. One-off tokens (URLs, typos, rare names) thus pass through the
+ * window without flushing popular words out of the main table. The main table is four-way
+ * set associative, and the least frequent entry of a set is the one that is replaced.
+ *
+ * <p>Reads are lock free. They are recorded in a striped {@link ReadBuffer} and added to the
+ * sketch in batches, so that hits on different threads don't contend. Writes to the main table
+ * lock one of a few stripes.
+ *
+ * <p>Each entry is counted at its actual heap cost, from the lengths of its word and stem.
+ * Once the entries go over the budget, the main table evicts entries instead of admitting new
+ * ones.
+ */
+public final class StemCache {
+
+    /**
+     * Expected heap cost of an average entry, with words and stems of around ten chars, and
+     * its slot; the tables get one slot for every this many bytes of the budget.
+     */
+    static final int AVERAGE_ENTRY_BYTES = 128;
+    /**
+     * Heap cost of a slot, whether used or not: up to 8 bytes for its table reference and up
+     * to 16 for its share of the sketch.
+     */
+    static final int SLOT_BYTES = 24;
+    /** Heap cost of an entry object, without its arrays. */
+    private static final int ENTRY_BYTES = 24;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private static final int WAYS = 4;
+    private static final int STRIPES = 16;
+
+    private final AtomicReferenceArray<Entry> window;
+    private final int windowMask;
+    private final AtomicReferenceArray<Entry> main;
+    private final int setMask;
+    private final FrequencySketch sketch;
+    private final ReadBuffer reads;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Object[] locks = new Object[STRIPES];
+    /** Heap cost of the entries in the window and the main table. */
+    private final AtomicLong entryBytes = new AtomicLong();
+    private final long maxEntryBytes;
+
+    /**
+     * @param capacity approximate number of entries to hold
+     * @param maxBytes the heap budget of the tables and entries
+     */
+    StemCache(int capacity, long maxBytes) {
+        int windowSize = Integer.highestOneBit(Math.max(1, capacity / 100));
+        int sets = Integer.highestOneBit(Math.max(WAYS, capacity - windowSize) / WAYS);
+        window = new AtomicReferenceArray<>(windowSize);
+        windowMask = windowSize - 1;
+        main = new AtomicReferenceArray<>(sets * WAYS);
+        setMask = sets - 1;
+        sketch = new FrequencySketch(windowSize + sets * WAYS);
+        reads = new ReadBuffer(4 * Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        maxEntryBytes = maxBytes - (long) capacity() * SLOT_BYTES;
+    }
+
+    /**
+     * Build a cache that fits in roughly the given number of bytes, or return null if
+     * that is 0.
+     */
+    public static StemCache create(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Stem cache size must not be negative, got " + maxBytes);
+        }
+        long capacity = maxBytes / AVERAGE_ENTRY_BYTES;
+        if (capacity == 0) return null;
+        return new StemCache((int) Math.min(capacity, 1 << 26), maxBytes);
+    }
+
+    /** The number of entries the cache can hold. */
+    public int capacity() {
+        return window.length() + main.length();
+    }
+
+    /** Estimated heap use of the tables and the entries in them. */
+    long sizeInBytes() {
+        return (long) capacity() * SLOT_BYTES + entryBytes.get();
+    }
+
+    /**
+     * Look up the stem of a word. The returned array is exactly as long as the stem, and must
+     * not be modified.
+     *
+     * @return the stem, or null if the word isn't cached
+     */
+    public char[] get(char[] buffer, int length) {
+        int hash = StemMemo.hash(buffer, length);
+        if (reads.record(hash)) drainReads();
+        Entry entry = window.get(hash & windowMask);
+        if (entry != null && entry.matches(hash, buffer, length)) return entry.stem;
+        int slot = (hash & setMask) * WAYS;
+        for (int way = 0; way < WAYS; way++, slot++) {
+            entry = main.get(slot);
+            if (entry != null && entry.matches(hash, buffer, length)) return entry.stem;
+        }
+        return null;
+    }
+
+    /**
+     * Add a word and its stem, normally after {@link #get(char[], int)} missed.
+     */
+    public void put(char[] word, int wordLength, char[] stem, int stemLength) {
+        Entry entry = new Entry(StemMemo.hash(word, wordLength), word, wordLength, stem, stemLength);
+        entryBytes.addAndGet(entry.bytes);
+        Entry candidate = window.getAndSet(entry.hash & windowMask, entry);
+        if (candidate == null) return;
+        if (candidate.matches(entry.hash, word, wordLength)) {
+            entryBytes.addAndGet(-candidate.bytes);
+            return;
+        }
+        // let the admission decision see the latest reads
+        drainReads();
+        admit(candidate);
+    }
+
+    /* Add the recorded reads to the sketch, unless another thread is already doing it. */
+    private void drainReads() {
+        if (!draining.compareAndSet(false, true)) return;
+        try {
+            reads.drainTo(sketch);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /*
+     * Move an entry from the window to the main table, if it is popular enough. While the
+     * entries are over the budget, the least frequent entries of the set are evicted first,
+     * and nothing is added unless that makes room.
+     */
+    private void admit(Entry candidate) {
+        int set = candidate.hash & setMask;
+        int first = set * WAYS;
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int candidateFrequency = sketch.frequency(candidate.hash);
+            while (true) {
+                int free = -1;
+                int victim = -1;
+                int victimFrequency = Integer.MAX_VALUE;
+                for (int slot = first; slot < first + WAYS; slot++) {
+                    Entry entry = main.get(slot);
+                    if (entry == null) {
+                        free = slot;
+                        continue;
+                    }
+                    if (candidate != null && entry.matches(candidate.hash, candidate.word, candidate.word.length)) {
+                        entryBytes.addAndGet(-candidate.bytes);
+                        candidate = null;
+                        continue;
+                    }
+                    int frequency = sketch.frequency(entry.hash);
+                    if (frequency < victimFrequency) {
+                        victim = slot;
+                        victimFrequency = frequency;
+                    }
+                }
+                boolean overBudget = entryBytes.get() > maxEntryBytes;
+                if (candidate != null && free >= 0 && !overBudget) {
+                    main.set(free, candidate);
+                    return;
+                }
+                if (candidate != null && (victim < 0 || candidateFrequency <= victimFrequency)) {
+                    entryBytes.addAndGet(-candidate.bytes);
+                    candidate = null;
+                } else if (victim >= 0 && (candidate != null || overBudget)) {
+                    entryBytes.addAndGet(-main.get(victim).bytes);
+                    main.set(victim, null);
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** An immutable cache entry, so that it can be read without locking. */
+    private static final class Entry {
+        final int hash;
+        final char[] word;
+        final char[] stem;
+        /** Heap cost of the entry and its arrays. */
+        final int bytes;
+
+        Entry(int hash, char[] word, int wordLength, char[] stem, int stemLength) {
+            this.hash = hash;
+            this.word = new char[wordLength];
+            System.arraycopy(word, 0, this.word, 0, wordLength);
+            this.stem = new char[stemLength];
+            System.arraycopy(stem, 0, this.stem, 0, stemLength);
+            bytes = ENTRY_BYTES + arrayBytes(wordLength) + arrayBytes(stemLength);
+        }
+
+        /* A char array's header and chars, padded to 8 bytes. */
+        private static int arrayBytes(int length) {
+            return (ARRAY_HEADER_BYTES + 2 * length + 7) & ~7;
+        }
+
+        boolean matches(int hash, char[] buffer, int length) {
+            if (this.hash != hash || word.length != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (word[i] != buffer[i]) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * The stem lookups of a single token filter instance: first its own {@link StemMemo}, then
+ * the node-wide {@link StemCache}. Either can be missing. Used just like a memo:
+ * <pre>
+ *   if (!stems.replaceWithStem(termAtt)) {
+ *       // stem termAtt in place
+ *       stems.store(termAtt);
+ *   }
+ * </pre>
+ *
+ * <p>Not thread safe, just like the token filter that owns it.
+ */
+public final class StemLookup {
+
+    private final StemMemo memo;
+    private final StemCache cache;
+
+    /* The last word the cache missed, waiting for its stem, and its length (-1 if none). */
+    private final char[] word = new char[StemMemo.MAX_WORD_LENGTH];
+    private int wordLength = -1;
+
+    private StemLookup(StemMemo memo, StemCache cache) {
+        this.memo = memo;
+        this.cache = cache;
+    }
+
+    /**
+     * @param memoSize size of the per-filter memo, or 0 for none
+     * @param cache the node-wide cache, or null for none
+     * @return the lookup, or null if there is nothing to look in
+     */
+    public static StemLookup create(int memoSize, StemCache cache) {
+        StemMemo memo = StemMemo.create(memoSize);
+        if (memo == null && cache == null) return null;
+        return new StemLookup(memo, cache);
+    }
+
+    /**
+     * If the stem of the term is known, replace the term with it and return true.
+     * Otherwise, hold on to the term, so that the next call to
+     * {@link #store(CharTermAttribute)} can record its stem, and return false.
+     */
+    public boolean replaceWithStem(CharTermAttribute termAtt) {
+        wordLength = -1;
+        if (memo != null && memo.replaceWithStem(termAtt)) return true;
+        if (cache == null) return false;
+
+        int length = termAtt.length();
+        if (length > StemMemo.MAX_WORD_LENGTH) return false;
+        char[] stem = cache.get(termAtt.buffer(), length);
+        if (stem != null) {
+            char[] target = termAtt.resizeBuffer(stem.length);
+            System.arraycopy(stem, 0, target, 0, stem.length);
+            termAtt.setLength(stem.length);
+            if (memo != null) memo.store(termAtt);
+            return true;
+        }
+        System.arraycopy(termAtt.buffer(), 0, word, 0, length);
+        wordLength = length;
+        return false;
+    }
+
+    /**
+     * Record the current term as the stem of the word from the last missed call to
+     * {@link #replaceWithStem(CharTermAttribute)}.
+     */
+    public void store(CharTermAttribute termAtt) {
+        if (memo != null) memo.store(termAtt);
+        if (wordLength >= 0) {
+            cache.put(word, wordLength, termAtt.buffer(), termAtt.length());
+            wordLength = -1;
+        }
+    }
+}
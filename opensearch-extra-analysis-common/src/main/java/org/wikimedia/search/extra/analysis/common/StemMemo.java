@@ -0,0 +1,157 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * A small memo of recent words and their stems, to be kept on a single token filter
+ * instance. Running text is heavily Zipfian, so a few thousand entries catch most tokens.
+ *
+ * <p>The table is two-way set associative: each word can only be in one of two slots,
+ * and a miss evicts the least recently used of the two. Key and stem buffers are reused,
+ * so once the memo is warm, neither hits nor misses allocate.
+ *
+ * <p>Typical use in {@code incrementToken()}:
+ * <pre>
+ *   if (!memo.replaceWithStem(termAtt)) {
+ *       // stem termAtt in place
+ *       memo.store(termAtt);
+ *   }
+ * </pre>
+ *
+ * <p>Not thread safe, just like the token filter that owns it. Since filters are reused
+ * across {@code reset()}, so is their memo.
+ */
+public final class StemMemo {
+
+    /** Name of the token filter setting for the number of memo entries; 0 disables it. */
+    public static final String SIZE_SETTING = "memo_size";
+
+    /** Largest allowed number of entries. */
+    public static final int MAX_SIZE = 1 << 16;
+
+    /** Longer words (URLs, chemical names, etc.) are rarely repeated, so they aren't memoized. */
+    static final int MAX_WORD_LENGTH = 32;
+
+    private static final int WAYS = 2;
+
+    private final int setMask;
+    private final char[][] words;
+    private final int[] wordLengths;
+    private final char[][] stems;
+    private final int[] stemLengths;
+    /** Per set, the way that was used most recently. */
+    private final byte[] recent;
+
+    /** Slot waiting for the stem of the last missed word, or -1. */
+    private int pending = -1;
+
+    /**
+     * @param size the number of entries, rounded up to a power of two (at least 2)
+     */
+    public StemMemo(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException(
+                "[" + SIZE_SETTING + "] must be between 1 and " + MAX_SIZE + ", got " + size);
+        }
+        int entries = size <= WAYS ? WAYS : Integer.highestOneBit(size - 1) << 1;
+        setMask = entries / WAYS - 1;
+        words = new char[entries][];
+        wordLengths = new int[entries];
+        Arrays.fill(wordLengths, -1);
+        stems = new char[entries][];
+        stemLengths = new int[entries];
+        recent = new byte[entries / WAYS];
+    }
+
+    /**
+     * Build a memo of the given size, or return null if size is 0.
+     */
+    public static StemMemo create(int size) {
+        return size == 0 ? null : new StemMemo(size);
+    }
+
+    /** The number of entries the memo can hold. */
+    public int capacity() {
+        return words.length;
+    }
+
+    /**
+     * If the term is memoized, replace it with its stem and return true. Otherwise, hold
+     * on to a copy of it, so that the next call to {@link #store(CharTermAttribute)} can
+     * record its stem, and return false.
+     */
+    public boolean replaceWithStem(CharTermAttribute termAtt) {
+        pending = -1;
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        if (length > MAX_WORD_LENGTH) return false;
+
+        int set = hash(buffer, length) & setMask;
+        int slot = set * WAYS;
+        for (int way = 0; way < WAYS; way++, slot++) {
+            if (wordLengths[slot] == length && stemLengths[slot] >= 0
+                    && matches(words[slot], buffer, length)) {
+                recent[set] = (byte) way;
+                int stemLength = stemLengths[slot];
+                char[] target = termAtt.resizeBuffer(stemLength);
+                System.arraycopy(stems[slot], 0, target, 0, stemLength);
+                termAtt.setLength(stemLength);
+                return true;
+            }
+        }
+
+        // miss: take over the least recently used way, until the stem arrives
+        int way = recent[set] ^ 1;
+        slot = set * WAYS + way;
+        recent[set] = (byte) way;
+        words[slot] = copy(words[slot], buffer, length);
+        wordLengths[slot] = length;
+        stemLengths[slot] = -1; // not usable until its stem is stored
+        pending = slot;
+        return false;
+    }
+
+    /**
+     * Record the current term as the stem of the word from the last missed call to
+     * {@link #replaceWithStem(CharTermAttribute)}. Does nothing if that word wasn't held on to.
+     */
+    public void store(CharTermAttribute termAtt) {
+        if (pending < 0) return;
+        int length = termAtt.length();
+        stems[pending] = copy(stems[pending], termAtt.buffer(), length);
+        stemLengths[pending] = length;
+        pending = -1;
+    }
+
+    private static char[] copy(char[] target, char[] source, int length) {
+        if (target == null) {
+            target = new char[ArrayUtil.oversize(length, Character.BYTES)];
+        } else if (target.length < length) {
+            target = ArrayUtil.grow(target, length);
+        }
+        System.arraycopy(source, 0, target, 0, length);
+        return target;
+    }
+
+    private static boolean matches(char[] word, char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            if (word[i] != buffer[i]) return false;
+        }
+        return true;
+    }
+
+    /* Also used by StemCache. */
+    static int hash(char[] buffer, int length) {
+        int h = length;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + buffer[i];
+        }
+        // spread the high bits down, as only the low ones pick the set
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,183 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+
+/**
+ * A trie of reversed words, each with a value, so that all the suffixes of a word that are in
+ * it are found in a single backward scan, without allocating. The values are up to the
+ * stemmer: flags, or an index into its own table.
+ *
+ * <pre>
+ *   int node = SuffixTrie.ROOT;
+ *   for (int i = length - 1; i &gt;= 0; i--) {
+ *       node = trie.child(node, buffer[i]);
+ *       if (node &lt; 0) break;
+ *       // buffer[i .. length) is in the trie if trie.value(node) != 0
+ *   }
+ * </pre>
+ *
+ * <p>The nodes are laid out breadth first in flat arrays, so that the children of each node are
+ * contiguous and sorted, and are found by binary search.
+ */
+public final class SuffixTrie {
+    public static final int ROOT = 0;
+
+    /** Node i has children {@code childLabels/children[firstChild[i] .. firstChild[i + 1])}. */
+    private final int[] firstChild;
+    /** Labels of the children of a node, sorted. */
+    private final char[] childLabels;
+    private final int[] children;
+    /** Value of the word spelled by the path to node i, or 0 if it isn't one. */
+    private final int[] values;
+
+    private SuffixTrie(int[] firstChild, char[] childLabels, int[] children, int[] values) {
+        this.firstChild = firstChild;
+        this.childLabels = childLabels;
+        this.children = children;
+        this.values = values;
+    }
+
+    /**
+     * @param words the words, with their values, which must not be 0; the empty word is on
+     *     the root
+     */
+    public SuffixTrie(Map<String, Integer> words) {
+        // build a pointer-based trie first, then lay it out breadth first
+        List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+        List<Integer> nodeValues = new ArrayList<>();
+        edges.add(new TreeMap<>());
+        nodeValues.add(0);
+        for (Map.Entry<String, Integer> entry : words.entrySet()) {
+            String word = entry.getKey();
+            if (entry.getValue() == 0) {
+                throw new IllegalArgumentException("The value of [" + word + "] must not be 0");
+            }
+            int node = ROOT;
+            for (int i = word.length() - 1; i >= 0; i--) {
+                Integer child = edges.get(node).get(word.charAt(i));
+                if (child == null) {
+                    child = edges.size();
+                    edges.get(node).put(word.charAt(i), child);
+                    edges.add(new TreeMap<>());
+                    nodeValues.add(0);
+                }
+                node = child;
+            }
+            nodeValues.set(node, entry.getValue());
+        }
+
+        int size = edges.size();
+        firstChild = new int[size + 1];
+        childLabels = new char[size - 1];
+        children = new int[size - 1];
+        values = new int[size];
+        // nodes were numbered as they were created; renumber them breadth first so that
+        // the children of every node are contiguous
+        int[] order = new int[size];
+        int[] newId = new int[size];
+        int tail = 1;
+        for (int head = 0; head < size; head++) {
+            int node = order[head];
+            newId[node] = head;
+            for (int child : edges.get(node).values()) {
+                order[tail++] = child;
+            }
+        }
+        int edge = 0;
+        for (int head = 0; head < size; head++) {
+            int node = order[head];
+            firstChild[head] = edge;
+            for (Map.Entry<Character, Integer> child : edges.get(node).entrySet()) {
+                childLabels[edge] = child.getKey();
+                children[edge] = newId[child.getValue()];
+                edge++;
+            }
+            values[head] = nodeValues.get(node);
+        }
+        firstChild[size] = edge;
+    }
+
+    /**
+     * Read a trie written with {@link #write(DataOutput)}.
+     */
+    public static SuffixTrie read(DataInput in) throws IOException {
+        int[] firstChild = readInts(in);
+        char[] childLabels = in.readString().toCharArray();
+        int[] children = readInts(in);
+        return new SuffixTrie(firstChild, childLabels, children, readInts(in));
+    }
+
+    public void write(DataOutput out) throws IOException {
+        writeInts(out, firstChild);
+        out.writeString(new String(childLabels));
+        writeInts(out, children);
+        writeInts(out, values);
+    }
+
+    /**
+     * The child of the node for the char before the suffix it spells, or -1 if there is none.
+     */
+    public int child(int node, char label) {
+        int lo = firstChild[node];
+        int hi = firstChild[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char midLabel = childLabels[mid];
+            if (midLabel < label) {
+                lo = mid + 1;
+            } else if (midLabel > label) {
+                hi = mid - 1;
+            } else {
+                return children[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The value of the word spelled by the path to the node, or 0 if it isn't one.
+     */
+    public int value(int node) {
+        return values[node];
+    }
+
+    /**
+     * Whether every word in the trie contains one of the given chars, so that no word without
+     * any of them has a suffix in it.
+     */
+    public boolean everyWordContainsAnyOf(String chars) {
+        if (values[ROOT] != 0) return false;
+        // nodes are laid out breadth first, so each parent is seen before its children
+        boolean[] contains = new boolean[values.length];
+        for (int node = 0; node < values.length; node++) {
+            for (int edge = firstChild[node]; edge < firstChild[node + 1]; edge++) {
+                int child = children[edge];
+                contains[child] = contains[node] || chars.indexOf(childLabels[edge]) >= 0;
+                if (values[child] != 0 && !contains[child]) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeInts(DataOutput out, int[] ints) throws IOException {
+        out.writeVInt(ints.length);
+        for (int value : ints) {
+            out.writeZInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        int[] ints = new int[in.readVInt()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = in.readZInt();
+        }
+        return ints;
+    }
+}
@@ -0,0 +1,66 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The stats of all the filters of one stemmer type (e.g., serbian_stemmer) on this node, by
+ * index and filter name. Exposed through {@link RestAnalysisStatsAction}.
+ */
+public final class AnalysisStats {
+
+    /**
+     * The index that the preconfigured filter is counted under, as it is shared by all
+     * indices.
+     */
+    public static final String PRECONFIGURED = "_preconfigured";
+
+    private final String filterType;
+    private final ConcurrentMap<String, ConcurrentMap<String, FilterStats>> indices = new ConcurrentHashMap<>();
+
+    /**
+     * @param filterType the type of the filters, which names the stats action and endpoint
+     */
+    public AnalysisStats(String filterType) {
+        this.filterType = filterType;
+    }
+
+    public String filterType() {
+        return filterType;
+    }
+
+    /**
+     * The counters of a filter, created when the index is created (or opened) on this node.
+     */
+    public FilterStats forFilter(String index, String filter) {
+        return indices.computeIfAbsent(index, i -> new ConcurrentHashMap<>())
+            .computeIfAbsent(filter, f -> new FilterStats());
+    }
+
+    /**
+     * Forget the stats of an index that was removed from this node.
+     */
+    public void removeIndex(String index) {
+        indices.remove(index);
+    }
+
+    /**
+     * The current stats of each filter, sorted by index and filter name.
+     */
+    public List<FilterStatsSnapshot> snapshot() {
+        List<FilterStatsSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<String, FilterStats>> index : indices.entrySet()) {
+            for (Map.Entry<String, FilterStats> filter : index.getValue().entrySet()) {
+                snapshots.add(filter.getValue().snapshot(index.getKey(), filter.getKey()));
+            }
+        }
+        snapshots.sort((a, b) -> {
+            int order = a.index().compareTo(b.index());
+            return order != 0 ? order : a.filter().compareTo(b.filter());
+        });
+        return snapshots;
+    }
+}
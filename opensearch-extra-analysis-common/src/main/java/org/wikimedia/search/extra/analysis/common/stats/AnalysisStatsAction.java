@@ -0,0 +1,24 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import org.opensearch.action.ActionType;
+
+/**
+ * Gets the {@link AnalysisStats} of one filter type from each node. Each plugin bundles its own
+ * copy of this code, so the action is named after the filter type to keep it apart from the
+ * other plugins' actions.
+ */
+public final class AnalysisStatsAction extends ActionType<AnalysisStatsResponse> {
+
+    static final String NAME_PREFIX = "cluster:monitor/extra_analysis/stats/";
+
+    private final String filterType;
+
+    public AnalysisStatsAction(String filterType) {
+        super(NAME_PREFIX + filterType, AnalysisStatsResponse::new);
+        this.filterType = filterType;
+    }
+
+    public String filterType() {
+        return filterType;
+    }
+}
@@ -0,0 +1,24 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.io.IOException;
+
+import org.opensearch.action.support.nodes.BaseNodeRequest;
+import org.opensearch.core.common.io.stream.StreamInput;
+
+/**
+ * Request for the analysis stats of a single node.
+ *
+ * <p>{@code BaseNodeRequest} is deprecated, but {@code TransportNodesAction} still requires its
+ * node requests to extend it on OpenSearch 2.x; extend {@code TransportRequest} directly once
+ * that bound is gone.
+ */
+@SuppressWarnings("deprecation")
+public final class AnalysisStatsNodeRequest extends BaseNodeRequest {
+
+    public AnalysisStatsNodeRequest() {
+    }
+
+    public AnalysisStatsNodeRequest(StreamInput in) throws IOException {
+        super(in);
+    }
+}
@@ -0,0 +1,60 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.opensearch.action.support.nodes.BaseNodeResponse;
+import org.opensearch.cluster.node.DiscoveryNode;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.xcontent.ToXContentFragment;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+/**
+ * The analysis stats of a single node.
+ */
+public final class AnalysisStatsNodeResponse extends BaseNodeResponse implements ToXContentFragment {
+
+    private final List<FilterStatsSnapshot> filters;
+
+    public AnalysisStatsNodeResponse(DiscoveryNode node, List<FilterStatsSnapshot> filters) {
+        super(node);
+        this.filters = filters;
+    }
+
+    public AnalysisStatsNodeResponse(StreamInput in) throws IOException {
+        super(in);
+        filters = in.readList(FilterStatsSnapshot::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeList(filters);
+    }
+
+    /** The stats of each filter, sorted by index and filter name. */
+    public List<FilterStatsSnapshot> filters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    /** {@code "name": ..., "indices": {index: {filter: {stats}}}} */
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field("name", getNode().getName());
+        builder.startObject("indices");
+        String index = null;
+        for (FilterStatsSnapshot filter : filters) {
+            if (!filter.index().equals(index)) {
+                if (index != null) builder.endObject();
+                index = filter.index();
+                builder.startObject(index);
+            }
+            builder.field(filter.filter());
+            filter.toXContent(builder, params);
+        }
+        if (index != null) builder.endObject();
+        return builder.endObject();
+    }
+}
@@ -0,0 +1,20 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.io.IOException;
+
+import org.opensearch.action.support.nodes.BaseNodesRequest;
+import org.opensearch.core.common.io.stream.StreamInput;
+
+/**
+ * Request for the analysis stats of the given nodes, or of all nodes if none are given.
+ */
+public final class AnalysisStatsRequest extends BaseNodesRequest<AnalysisStatsRequest> {
+
+    public AnalysisStatsRequest(String... nodesIds) {
+        super(nodesIds);
+    }
+
+    public AnalysisStatsRequest(StreamInput in) throws IOException {
+        super(in);
+    }
+}
@@ -0,0 +1,43 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of one stemmer token filter of one index, on this node.
+ *
+ * <p>Filter instances count in plain fields, with their own {@link TokenStats}, and add their
+ * counts here when they are done with a stream. The counters are striped, so that filters
+ * analyzing in parallel on many threads don't contend on them.
+ */
+public final class FilterStats {
+
+    final LongAdder tokens = new LongAdder();
+    final LongAdder changed = new LongAdder();
+    final LongAdder transliterated = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+    final LongAdder cacheMisses = new LongAdder();
+    final LongAdder timedTokens = new LongAdder();
+    final LongAdder timedNanos = new LongAdder();
+
+    /**
+     * Counts for a single filter instance, which is not thread safe.
+     */
+    public TokenStats newTokenStats() {
+        return new TokenStats(this);
+    }
+
+    void add(TokenStats stats) {
+        tokens.add(stats.tokens);
+        changed.add(stats.changed);
+        transliterated.add(stats.transliterated);
+        cacheHits.add(stats.cacheHits);
+        cacheMisses.add(stats.cacheMisses);
+        timedTokens.add(stats.timedTokens);
+        timedNanos.add(stats.timedNanos);
+    }
+
+    FilterStatsSnapshot snapshot(String index, String filter) {
+        return new FilterStatsSnapshot(index, filter, tokens.sum(), changed.sum(), transliterated.sum(),
+                cacheHits.sum(), cacheMisses.sum(), timedTokens.sum(), timedNanos.sum());
+    }
+}
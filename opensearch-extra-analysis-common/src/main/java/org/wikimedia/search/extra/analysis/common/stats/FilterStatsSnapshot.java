@@ -0,0 +1,119 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.opensearch.common.unit.TimeValue;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.core.common.io.stream.StreamOutput;
+import org.opensearch.core.common.io.stream.Writeable;
+import org.opensearch.core.xcontent.ToXContentObject;
+import org.opensearch.core.xcontent.XContentBuilder;
+
+/**
+ * The counters of one filter of one index, as read at one point in time.
+ */
+public final class FilterStatsSnapshot implements Writeable, ToXContentObject {
+
+    private final String index;
+    private final String filter;
+    private final long tokens;
+    private final long changed;
+    private final long transliterated;
+    private final long cacheHits;
+    private final long cacheMisses;
+    private final long timedTokens;
+    private final long timedNanos;
+
+    FilterStatsSnapshot(String index, String filter, long tokens, long changed, long transliterated,
+            long cacheHits, long cacheMisses, long timedTokens, long timedNanos) {
+        this.index = index;
+        this.filter = filter;
+        this.tokens = tokens;
+        this.changed = changed;
+        this.transliterated = transliterated;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.timedTokens = timedTokens;
+        this.timedNanos = timedNanos;
+    }
+
+    public FilterStatsSnapshot(StreamInput in) throws IOException {
+        index = in.readString();
+        filter = in.readString();
+        tokens = in.readVLong();
+        changed = in.readVLong();
+        transliterated = in.readVLong();
+        cacheHits = in.readVLong();
+        cacheMisses = in.readVLong();
+        timedTokens = in.readVLong();
+        timedNanos = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(index);
+        out.writeString(filter);
+        out.writeVLong(tokens);
+        out.writeVLong(changed);
+        out.writeVLong(transliterated);
+        out.writeVLong(cacheHits);
+        out.writeVLong(cacheMisses);
+        out.writeVLong(timedTokens);
+        out.writeVLong(timedNanos);
+    }
+
+    public String index() {
+        return index;
+    }
+
+    public String filter() {
+        return filter;
+    }
+
+    public long tokens() {
+        return tokens;
+    }
+
+    public long changed() {
+        return changed;
+    }
+
+    public long transliterated() {
+        return transliterated;
+    }
+
+    public long cacheHits() {
+        return cacheHits;
+    }
+
+    public long cacheMisses() {
+        return cacheMisses;
+    }
+
+    public long timedTokens() {
+        return timedTokens;
+    }
+
+    /**
+     * The time spent stemming all the tokens, estimated from the timed ones.
+     */
+    public long estimatedNanos() {
+        if (timedTokens == 0) return 0;
+        return (long) ((double) timedNanos / timedTokens * tokens);
+    }
+
+    /** The fields of the filter's stats object; the index and filter name are the keys above it. */
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field("tokens", tokens);
+        builder.field("changed", changed);
+        builder.field("transliterated", transliterated);
+        builder.field("cache_hits", cacheHits);
+        builder.field("cache_misses", cacheMisses);
+        builder.field("timed_tokens", timedTokens);
+        builder.humanReadableField("time_in_nanos", "time", new TimeValue(estimatedNanos(), TimeUnit.NANOSECONDS));
+        return builder.endObject();
+    }
+}
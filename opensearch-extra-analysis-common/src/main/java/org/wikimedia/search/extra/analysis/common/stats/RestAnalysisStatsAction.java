@@ -0,0 +1,45 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import static org.opensearch.rest.RestRequest.Method.GET;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.opensearch.client.node.NodeClient;
+import org.opensearch.core.common.Strings;
+import org.opensearch.rest.BaseRestHandler;
+import org.opensearch.rest.RestRequest;
+import org.opensearch.rest.action.RestActions;
+
+/**
+ * {@code GET /_extra_analysis/stats/<filter type>}, or
+ * {@code GET /_nodes/<node ids>/_extra_analysis/stats/<filter type>} for some nodes only.
+ */
+public class RestAnalysisStatsAction extends BaseRestHandler {
+
+    private final AnalysisStatsAction action;
+
+    public RestAnalysisStatsAction(AnalysisStatsAction action) {
+        this.action = action;
+    }
+
+    @Override
+    public String getName() {
+        return "extra_analysis_stats_" + action.filterType();
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Arrays.asList(
+                new Route(GET, "/_extra_analysis/stats/" + action.filterType()),
+                new Route(GET, "/_nodes/{nodeId}/_extra_analysis/stats/" + action.filterType()));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        AnalysisStatsRequest statsRequest = new AnalysisStatsRequest(
+                Strings.splitStringByCommaToArray(request.param("nodeId")));
+        statsRequest.timeout(request.param("timeout"));
+        return channel -> client.execute(action, statsRequest, new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
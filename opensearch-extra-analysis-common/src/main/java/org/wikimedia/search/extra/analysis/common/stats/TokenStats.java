@@ -0,0 +1,105 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * The counts of a single token filter instance, added to its {@link FilterStats} by
+ * {@link #flush()}. Used around stemming each token:
+ * <pre>
+ *   stats.start(termAtt);
+ *   // stem termAtt in place, calling stats.cacheHit() or stats.cacheMiss()
+ *   stats.end(termAtt);
+ * </pre>
+ *
+ * <p>Only one token in {@value #SAMPLE_INTERVAL} is timed, as reading the clock costs about
+ * as much as stemming a word from the cache; the time of the others is estimated from it.
+ *
+ * <p>Not thread safe, just like the token filter that owns it.
+ */
+public final class TokenStats {
+
+    static final int SAMPLE_INTERVAL = 64;
+
+    private final FilterStats target;
+    /* The term before stemming, to tell whether stemming changed it. */
+    private char[] input = new char[16];
+    private int inputLength;
+    /* Tokens until the next timed one; kept across streams, as many are short. */
+    private int untilTimed = SAMPLE_INTERVAL;
+    /* Whether the current token is timed, and when it started. */
+    private boolean timing;
+    private long startNanos;
+
+    long tokens;
+    long changed;
+    long transliterated;
+    long cacheHits;
+    long cacheMisses;
+    long timedTokens;
+    long timedNanos;
+
+    TokenStats(FilterStats target) {
+        this.target = target;
+    }
+
+    /**
+     * Call before stemming the term.
+     */
+    public void start(CharTermAttribute termAtt) {
+        inputLength = termAtt.length();
+        input = ArrayUtil.grow(input, inputLength);
+        System.arraycopy(termAtt.buffer(), 0, input, 0, inputLength);
+        tokens++;
+        if (--untilTimed == 0) {
+            untilTimed = SAMPLE_INTERVAL;
+            timing = true;
+            startNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Call after stemming the term.
+     */
+    public void end(CharTermAttribute termAtt) {
+        if (timing) {
+            timedNanos += System.nanoTime() - startNanos;
+            timedTokens++;
+            timing = false;
+        }
+        if (!Arrays.equals(termAtt.buffer(), 0, termAtt.length(), input, 0, inputLength)) changed++;
+    }
+
+    /** The term is converted to another script for stemming, whether or not its stem was known. */
+    public void transliterated() {
+        transliterated++;
+    }
+
+    /** The stem of the term was known. */
+    public void cacheHit() {
+        cacheHits++;
+    }
+
+    /** The term had to be stemmed. */
+    public void cacheMiss() {
+        cacheMisses++;
+    }
+
+    /**
+     * Add the counts so far to the filter's counters, and start again from zero. Call when
+     * done with a stream.
+     */
+    public void flush() {
+        if (tokens == 0) return;
+        target.add(this);
+        tokens = 0;
+        changed = 0;
+        transliterated = 0;
+        cacheHits = 0;
+        cacheMisses = 0;
+        timedTokens = 0;
+        timedNanos = 0;
+    }
+}
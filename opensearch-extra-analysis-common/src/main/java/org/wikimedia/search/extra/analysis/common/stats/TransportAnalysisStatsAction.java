@@ -0,0 +1,52 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.opensearch.action.FailedNodeException;
+import org.opensearch.action.support.ActionFilters;
+import org.opensearch.action.support.nodes.TransportNodesAction;
+import org.opensearch.cluster.service.ClusterService;
+import org.opensearch.common.inject.Inject;
+import org.opensearch.core.common.io.stream.StreamInput;
+import org.opensearch.threadpool.ThreadPool;
+import org.opensearch.transport.TransportService;
+
+/**
+ * Reads the {@link AnalysisStats} of each node.
+ */
+public class TransportAnalysisStatsAction extends TransportNodesAction<AnalysisStatsRequest, AnalysisStatsResponse,
+        AnalysisStatsNodeRequest, AnalysisStatsNodeResponse> {
+
+    private final AnalysisStats stats;
+
+    @Inject
+    public TransportAnalysisStatsAction(ThreadPool threadPool, ClusterService clusterService,
+            TransportService transportService, ActionFilters actionFilters, AnalysisStats stats) {
+        super(AnalysisStatsAction.NAME_PREFIX + stats.filterType(), threadPool, clusterService, transportService,
+                actionFilters, AnalysisStatsRequest::new, AnalysisStatsNodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                AnalysisStatsNodeResponse.class);
+        this.stats = stats;
+    }
+
+    @Override
+    protected AnalysisStatsResponse newResponse(AnalysisStatsRequest request, List<AnalysisStatsNodeResponse> nodes,
+            List<FailedNodeException> failures) {
+        return new AnalysisStatsResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected AnalysisStatsNodeRequest newNodeRequest(AnalysisStatsRequest request) {
+        return new AnalysisStatsNodeRequest();
+    }
+
+    @Override
+    protected AnalysisStatsNodeResponse newNodeResponse(StreamInput in) throws IOException {
+        return new AnalysisStatsNodeResponse(in);
+    }
+
+    @Override
+    protected AnalysisStatsNodeResponse nodeOperation(AnalysisStatsNodeRequest request) {
+        return new AnalysisStatsNodeResponse(clusterService.localNode(), stats.snapshot());
+    }
+}
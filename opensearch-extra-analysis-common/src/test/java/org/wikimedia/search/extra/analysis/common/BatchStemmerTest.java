@@ -0,0 +1,76 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BatchStemmerTest {
+
+    /* Drops the last char of words of 3 chars or more, and appends "x" to the rest, counting calls. */
+    private static final class CountingStemmer implements InPlaceStemmer {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public int bufferLength(int length) {
+            return length + 1;
+        }
+
+        @Override
+        public int stem(char[] buffer, int length) {
+            assert buffer.length >= bufferLength(length);
+            calls.incrementAndGet();
+            if (length >= 3) return length - 1;
+            buffer[length] = 'x';
+            return length + 1;
+        }
+    }
+
+    private static String expected(String word) {
+        if (word == null) return null;
+        return word.length() >= 3 ? word.substring(0, word.length() - 1) : word + "x";
+    }
+
+    @Test
+    public void testSmallBatch() {
+        CountingStemmer stemmer = new CountingStemmer();
+        String[] words = {"kuća", "kuća", null, "je", "kuće", "", "je"};
+        String[] stems = new String[words.length + 1];
+        BatchStemmer.stemAll(stemmer, words, stems);
+        assertThat(stems).containsExactly("kuć", "kuć", null, "jex", "kuć", "x", "jex", null);
+        // repeats are stemmed once
+        assertThat(stemmer.calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testLargeBatch() {
+        CountingStemmer stemmer = new CountingStemmer();
+        Random random = new Random(42);
+        String[] words = new String[10 * BatchStemmer.SLICE_SIZE + 17];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = random.nextInt(100) == 0 ? null : Integer.toString(random.nextInt(500), 36);
+        }
+        String[] stems = new String[words.length];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BatchStemmer.stemAll(stemmer, words, stems, pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < words.length; i++) {
+            assertThat(stems[i]).as(words[i]).isEqualTo(expected(words[i]));
+        }
+        // each slice stems at most the 500 distinct words
+        assertThat(stemmer.calls.get()).isLessThanOrEqualTo(16 * 500);
+    }
+
+    @Test
+    public void testOutputTooShort() {
+        assertThatThrownBy(() -> BatchStemmer.stemAll(new CountingStemmer(), new String[2], new String[1]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,72 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class CharClassifierTest {
+
+    private static final int VOWEL = 1;
+    private static final int DIGIT = 2;
+    private static final int CYRILLIC = 4;
+    private static final int OTHER = 8;
+
+    private final CharClassifier classifier = CharClassifier.builder()
+        .add(VOWEL, "aeiouаеиоу")
+        .add(DIGIT, '0', '9')
+        .add(CYRILLIC, 'Ѐ', 'џ')
+        .addOther(OTHER)
+        .build();
+
+    private int classify(String word) {
+        return classifier.classify(word.toCharArray(), word.length());
+    }
+
+    @Test
+    public void testClasses() {
+        assertThat(classify("")).isZero();
+        assertThat(classify("psst")).isZero();
+        assertThat(classify("kuća")).isEqualTo(VOWEL);
+        assertThat(classify("1960")).isEqualTo(DIGIT);
+        assertThat(classify("1960a")).isEqualTo(VOWEL | DIGIT);
+        // chars can be in more than one class
+        assertThat(classify("кућа")).isEqualTo(VOWEL | CYRILLIC);
+        assertThat(classify("ћћ")).isEqualTo(CYRILLIC);
+        assertThat(classify("위키백과")).isEqualTo(OTHER);
+        assertThat(classify("x위")).isEqualTo(OTHER);
+    }
+
+    @Test
+    public void testOnlyTheWordIsClassified() {
+        assertThat(classifier.classify("psa".toCharArray(), 2)).isZero();
+    }
+
+    @Test
+    public void testLowercaseAndClassify() {
+        String[][] words = {
+            {"KuĆA", "kuća"}, {"ДОБРО", "добро"}, {"ЉУБЉАНА", "љубљана"}, {"1960-IH", "1960-ih"},
+            // outside the table, into it, and supplementary chars
+            {"\u212A", "k"}, {"ẞ", "ß"}, {"\uD801\uDC00\uD801\uDC01", "\uD801\uDC28\uD801\uDC29"}, {"위키", "위키"},
+        };
+        for (String[] word : words) {
+            char[] buffer = word[0].toCharArray();
+            int classes = classifier.lowercaseAndClassify(buffer, buffer.length);
+            assertThat(new String(buffer)).isEqualTo(word[1]);
+            // the classes are those of the lowercased word
+            assertThat(classes).as(word[0]).isEqualTo(classify(word[1]));
+        }
+        // only the word is lowercased
+        char[] buffer = "KUĆA".toCharArray();
+        classifier.lowercaseAndClassify(buffer, 2);
+        assertThat(new String(buffer)).isEqualTo("kuĆA");
+    }
+
+    @Test
+    public void testBuilderChecks() {
+        assertThatThrownBy(() -> CharClassifier.builder().add(0x100, "a"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CharClassifier.builder().add(1, "위"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,34 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void testCountsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        int hash = "vikipedio".hashCode();
+        assertThat(sketch.frequency(hash)).isZero();
+        for (int i = 1; i <= 20; i++) {
+            sketch.increment(hash);
+            assertThat(sketch.frequency(hash)).isEqualTo(Math.min(i, 15));
+        }
+    }
+
+    @Test
+    public void testCountsAreHalvedWithAge() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        int hot = 42;
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(hot);
+        }
+        assertThat(sketch.frequency(hot)).isEqualTo(10);
+        // enough other increments to trigger a reset
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment(i * 0x9e3779b9);
+        }
+        assertThat(sketch.frequency(hot)).isLessThan(10);
+    }
+}
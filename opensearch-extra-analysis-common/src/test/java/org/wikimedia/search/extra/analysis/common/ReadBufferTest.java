@@ -0,0 +1,45 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ReadBufferTest {
+
+    @Test
+    public void testDrainAddsRecordedReads() {
+        ReadBuffer reads = new ReadBuffer(4);
+        FrequencySketch sketch = new FrequencySketch(1024);
+        int hash = "vikipedio".hashCode();
+        for (int i = 0; i < 5; i++) {
+            assertThat(reads.record(hash)).isFalse();
+        }
+        assertThat(reads.record(0)).isFalse();
+        assertThat(sketch.frequency(hash)).isZero();
+        reads.drainTo(sketch);
+        assertThat(sketch.frequency(hash)).isEqualTo(5);
+        assertThat(sketch.frequency(0)).isEqualTo(1);
+        // a second drain finds nothing new
+        reads.drainTo(sketch);
+        assertThat(sketch.frequency(hash)).isEqualTo(5);
+    }
+
+    @Test
+    public void testFullBufferDropsReads() {
+        ReadBuffer reads = new ReadBuffer(1);
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 1; i < ReadBuffer.SIZE; i++) {
+            assertThat(reads.record(42)).isFalse();
+        }
+        assertThat(reads.record(42)).isTrue();
+        assertThat(reads.record(42)).isTrue();
+        reads.drainTo(sketch);
+        // 4-bit counters stop at 15, but every kept read was added
+        assertThat(sketch.frequency(42)).isEqualTo(15);
+        for (int i = 0; i < 3; i++) {
+            reads.record(7);
+        }
+        reads.drainTo(sketch);
+        assertThat(sketch.frequency(7)).isEqualTo(3);
+    }
+}
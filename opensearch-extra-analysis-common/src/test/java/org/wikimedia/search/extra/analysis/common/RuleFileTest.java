@@ -0,0 +1,65 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class RuleFileTest {
+
+    private static RuleFile parse(String text) throws IOException {
+        return RuleFile.parse(new BufferedReader(new StringReader(text)), "test", 1, "words", "pairs");
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        RuleFile rules = parse("# comment\n"
+                + "version 1\n"
+                + "\n"
+                + "[words]\n"
+                + "biti\n"
+                + "# another comment\n"
+                + "jesam\n"
+                + "[pairs]\n"
+                + "lozi\tloga\n"
+                + "ekat\tekta\n");
+        assertThat(rules.words("words")).containsExactly("biti", "jesam");
+        assertThat(rules.pairs("pairs")).containsExactly(entry("lozi", "loga"), entry("ekat", "ekta"));
+        assertThat(rules.entries("pairs", 2)).hasSize(2);
+    }
+
+    @Test
+    public void testEmptyFields() throws IOException {
+        // a trailing empty field is kept, as in word rules that can end in an empty ending
+        RuleFile rules = parse("version 1\n[pairs]\n.+k\ta|o|\n.+l\t\n");
+        assertThat(rules.entries("pairs", 2).get(1)).containsExactly(".+l", "");
+        assertThat(rules.words("words")).isEmpty();
+    }
+
+    @Test
+    public void testErrors() {
+        assertThatThrownBy(() -> parse("[words]\nbiti\n"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("line 1");
+        assertThatThrownBy(() -> parse("version 2\n"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("version 1");
+        assertThatThrownBy(() -> parse(""))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("no version");
+        assertThatThrownBy(() -> parse("version 1\nbiti\n"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("before the first section");
+        assertThatThrownBy(() -> parse("version 1\n[other]\n"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("unknown section");
+        assertThatThrownBy(() -> parse("version 1\n[words]\na\n[words]\nb\n"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("duplicate section");
+        assertThatThrownBy(() -> parse("version 1\n[words]\na\tb\n").words("words"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("[words]");
+        assertThatThrownBy(() -> parse("version 1\n[pairs]\na\tb\na\tc\n").pairs("pairs"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Duplicate key [a]");
+        assertThatThrownBy(() -> parse("version 1\n").words("missing"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
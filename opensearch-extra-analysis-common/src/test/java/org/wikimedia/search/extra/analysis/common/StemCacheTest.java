@@ -0,0 +1,135 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class StemCacheTest {
+
+    private static String get(StemCache cache, String word) {
+        char[] stem = cache.get(word.toCharArray(), word.length());
+        return stem == null ? null : new String(stem);
+    }
+
+    private static void put(StemCache cache, String word, String stem) {
+        cache.put(word.toCharArray(), word.length(), stem.toCharArray(), stem.length());
+    }
+
+    /* Look the word up, and add it on a miss, as a filter would. */
+    private static boolean lookup(StemCache cache, String word) {
+        if (get(cache, word) != null) return true;
+        put(cache, word, "s" + word);
+        return false;
+    }
+
+    @Test
+    public void testGetAfterPut() {
+        StemCache cache = StemCache.create(1 << 20);
+        assertThat(get(cache, "vikipediju")).isNull();
+        put(cache, "vikipediju", "vikipedij");
+        assertThat(get(cache, "vikipediju")).isEqualTo("vikipedij");
+        assertThat(get(cache, "vikipedija")).isNull();
+    }
+
+    @Test
+    public void testCapacity() {
+        assertThat(StemCache.create(0)).isNull();
+        assertThat(StemCache.create(StemCache.AVERAGE_ENTRY_BYTES - 1)).isNull();
+        assertThat(StemCache.create(StemCache.AVERAGE_ENTRY_BYTES).capacity()).isEqualTo(5);
+        assertThat(StemCache.create(1 << 20).capacity())
+            .isBetween((1 << 20) / StemCache.AVERAGE_ENTRY_BYTES / 2, (1 << 20) / StemCache.AVERAGE_ENTRY_BYTES);
+        assertThatThrownBy(() -> StemCache.create(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testOneOffWordsDontFlushPopularOnes() {
+        StemCache cache = StemCache.create(2000L * StemCache.AVERAGE_ENTRY_BYTES);
+        Random random = new Random(42);
+        int hits = 0;
+        int lookups = 0;
+        // each popular word is followed by eight words that are only seen once, as from a
+        // list of URLs; a plain LRU cache of the same size only gets about 35% hits on the
+        // popular words
+        for (int i = 0; i < 100_000; i++) {
+            boolean hit = lookup(cache, "popular" + random.nextInt(500));
+            for (int j = 0; j < 8; j++) {
+                lookup(cache, "once" + i + "_" + j);
+            }
+            if (i >= 10_000) {
+                lookups++;
+                if (hit) hits++;
+            }
+        }
+        assertThat(hits).isGreaterThan(lookups * 85 / 100);
+    }
+
+    @Test
+    public void testLongWordsCountAgainstTheBudget() {
+        long maxBytes = 2000L * StemCache.AVERAGE_ENTRY_BYTES;
+        StemCache cache = StemCache.create(maxBytes);
+        StringBuilder prefix = new StringBuilder();
+        while (prefix.length() < 200) {
+            prefix.append("dugačka");
+        }
+        // each entry takes several times the average, so far fewer than capacity() fit
+        int cached = 0;
+        for (int round = 0; round < 3; round++) {
+            cached = 0;
+            for (int i = 0; i < 2000; i++) {
+                if (lookup(cache, prefix + Integer.toString(i))) cached++;
+                assertThat(cache.sizeInBytes()).isLessThanOrEqualTo(maxBytes);
+            }
+        }
+        assertThat(cached).isBetween(1, 2000 / 4);
+        // short words that are used more often take the long ones' place, and more of them fit
+        for (int round = 0; round < 6; round++) {
+            cached = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (lookup(cache, "k" + i)) cached++;
+            }
+        }
+        assertThat(cached).isGreaterThan(1000 / 2);
+        assertThat(cache.sizeInBytes()).isLessThanOrEqualTo(maxBytes);
+    }
+
+    @Test
+    public void testConcurrentHitsAreAlwaysCorrect() throws Exception {
+        StemCache cache = StemCache.create(200L * StemCache.AVERAGE_ENTRY_BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                results.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    int hits = 0;
+                    for (int i = 0; i < 50_000; i++) {
+                        // roughly Zipfian, so there are plenty of both hits and misses
+                        String word = "w" + (int) Math.floor(Math.pow(2000, random.nextDouble()));
+                        String stem = get(cache, word);
+                        if (stem == null) {
+                            put(cache, word, "s" + word);
+                        } else {
+                            assertThat(stem).isEqualTo("s" + word);
+                            hits++;
+                        }
+                    }
+                    return hits;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertThat(result.get()).isGreaterThan(0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
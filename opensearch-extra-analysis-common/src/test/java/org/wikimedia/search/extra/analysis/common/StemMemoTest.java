@@ -0,0 +1,124 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttributeImpl;
+import org.junit.Test;
+
+public class StemMemoTest {
+
+    private final CharTermAttribute termAtt = new CharTermAttributeImpl();
+
+    /* Look the word up, "stemming" it with the given stem on a miss, as a filter would.
+     * Returns true on a hit.
+     */
+    private boolean lookup(StemMemo memo, String word, String stem) {
+        termAtt.setEmpty().append(word);
+        if (memo.replaceWithStem(termAtt)) return true;
+        termAtt.setEmpty().append(stem);
+        memo.store(termAtt);
+        return false;
+    }
+
+    @Test
+    public void testHitReplacesTerm() {
+        StemMemo memo = new StemMemo(16);
+        assertThat(lookup(memo, "vikipediju", "vikipedij")).isFalse();
+        termAtt.setEmpty().append("vikipediju");
+        assertThat(memo.replaceWithStem(termAtt)).isTrue();
+        assertThat(termAtt.toString()).isEqualTo("vikipedij");
+    }
+
+    @Test
+    public void testStemsLongerThanWord() {
+        StemMemo memo = new StemMemo(16);
+        assertThat(lookup(memo, "џџџ", "dždždž")).isFalse();
+        termAtt.setEmpty().append("џџџ");
+        assertThat(memo.replaceWithStem(termAtt)).isTrue();
+        assertThat(termAtt.toString()).isEqualTo("dždždž");
+    }
+
+    @Test
+    public void testNothingStoredWithoutMiss() {
+        StemMemo memo = new StemMemo(16);
+        termAtt.setEmpty().append("bonvenon");
+        memo.store(termAtt);
+        assertThat(lookup(memo, "bonvenon", "bonven")).isFalse();
+        assertThat(lookup(memo, "bonvenon", "bonven")).isTrue();
+    }
+
+    @Test
+    public void testUnstoredMissIsNotAHit() {
+        StemMemo memo = new StemMemo(16);
+        termAtt.setEmpty().append("bonvenon");
+        assertThat(memo.replaceWithStem(termAtt)).isFalse();
+        // no store(), so there is no stem to use
+        assertThat(memo.replaceWithStem(termAtt)).isFalse();
+        assertThat(termAtt.toString()).isEqualTo("bonvenon");
+    }
+
+    @Test
+    public void testLongWordsNotMemoized() {
+        StemMemo memo = new StemMemo(16);
+        String longWord = "https://sr.wikipedia.org/wiki/Главна_страна";
+        assertThat(longWord.length()).isGreaterThan(StemMemo.MAX_WORD_LENGTH);
+        assertThat(lookup(memo, longWord, "x")).isFalse();
+        assertThat(lookup(memo, longWord, "x")).isFalse();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        // one set, so every word competes for the same two slots
+        StemMemo memo = new StemMemo(2);
+        lookup(memo, "a1", "a");
+        lookup(memo, "b1", "b");
+        assertThat(lookup(memo, "a1", "a")).isTrue();
+        lookup(memo, "c1", "c"); // evicts b1
+        assertThat(lookup(memo, "a1", "a")).isTrue();
+        assertThat(lookup(memo, "c1", "c")).isTrue();
+        assertThat(lookup(memo, "b1", "b")).isFalse();
+    }
+
+    @Test
+    public void testCapacity() {
+        assertThat(new StemMemo(1).capacity()).isEqualTo(2);
+        assertThat(new StemMemo(2).capacity()).isEqualTo(2);
+        assertThat(new StemMemo(3).capacity()).isEqualTo(4);
+        assertThat(new StemMemo(1000).capacity()).isEqualTo(1024);
+        assertThat(new StemMemo(StemMemo.MAX_SIZE).capacity()).isEqualTo(StemMemo.MAX_SIZE);
+    }
+
+    @Test
+    public void testBadSizes() {
+        assertThat(StemMemo.create(0)).isNull();
+        assertThatThrownBy(() -> StemMemo.create(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StemMemo.create(StemMemo.MAX_SIZE + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testHitsAreAlwaysCorrect() {
+        StemMemo memo = new StemMemo(64);
+        Random random = new Random(42);
+        int hits = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // roughly Zipfian, so there are plenty of both hits and misses
+            int rank = (int) Math.floor(Math.pow(1000, random.nextDouble()));
+            String word = "w" + rank;
+            termAtt.setEmpty().append(word);
+            if (memo.replaceWithStem(termAtt)) {
+                hits++;
+                assertThat(termAtt.toString()).isEqualTo("s" + rank);
+            } else {
+                assertThat(termAtt.toString()).isEqualTo(word);
+                termAtt.setEmpty().append("s").append(Integer.toString(rank));
+                memo.store(termAtt);
+            }
+        }
+        assertThat(hits).isBetween(10_000, 90_000);
+    }
+}
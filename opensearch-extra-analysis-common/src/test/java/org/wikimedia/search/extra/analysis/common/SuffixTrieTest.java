@@ -0,0 +1,83 @@
+package org.wikimedia.search.extra.analysis.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.junit.Test;
+
+public class SuffixTrieTest {
+
+    /* The values of the suffixes of the word that are in the trie, shortest first. */
+    private static List<Integer> suffixValues(SuffixTrie trie, String word) {
+        List<Integer> found = new ArrayList<>();
+        if (trie.value(SuffixTrie.ROOT) != 0) found.add(trie.value(SuffixTrie.ROOT));
+        int node = SuffixTrie.ROOT;
+        for (int i = word.length() - 1; i >= 0; i--) {
+            node = trie.child(node, word.charAt(i));
+            if (node < 0) break;
+            if (trie.value(node) != 0) found.add(trie.value(node));
+        }
+        return found;
+    }
+
+    private static SuffixTrie trie() {
+        Map<String, Integer> words = new HashMap<>();
+        words.put("a", 1);
+        words.put("ama", 2);
+        words.put("ima", 3);
+        words.put("ovima", 4);
+        words.put("-", -1);
+        return new SuffixTrie(words);
+    }
+
+    @Test
+    public void testFindsEverySuffix() {
+        SuffixTrie trie = trie();
+        assertThat(suffixValues(trie, "gradovima")).containsExactly(1, 3, 4);
+        assertThat(suffixValues(trie, "ženama")).containsExactly(1, 2);
+        assertThat(suffixValues(trie, "ovima")).containsExactly(1, 3, 4);
+        assertThat(suffixValues(trie, "1-")).containsExactly(-1);
+        assertThat(suffixValues(trie, "grad")).isEmpty();
+        assertThat(suffixValues(trie, "")).isEmpty();
+        assertThat(trie.child(SuffixTrie.ROOT, 'z')).isEqualTo(-1);
+    }
+
+    @Test
+    public void testEmptyWordIsOnTheRoot() {
+        SuffixTrie trie = new SuffixTrie(Collections.singletonMap("", 7));
+        assertThat(trie.value(SuffixTrie.ROOT)).isEqualTo(7);
+        assertThat(suffixValues(trie, "grad")).containsExactly(7);
+        assertThat(trie.everyWordContainsAnyOf("aeiou")).isFalse();
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        trie().write(out);
+        SuffixTrie read = SuffixTrie.read(out.toDataInput());
+        for (String word : new String[] {"gradovima", "ženama", "1-", "grad", "a"}) {
+            assertThat(suffixValues(read, word)).isEqualTo(suffixValues(trie(), word));
+        }
+    }
+
+    @Test
+    public void testEveryWordContainsAnyOf() {
+        assertThat(trie().everyWordContainsAnyOf("a-")).isTrue();
+        assertThat(trie().everyWordContainsAnyOf("aeiou")).isFalse();
+        assertThat(new SuffixTrie(Collections.singletonMap("ps", 1)).everyWordContainsAnyOf("aeiou")).isFalse();
+    }
+
+    @Test
+    public void testZeroValuesAreRejected() {
+        assertThatThrownBy(() -> new SuffixTrie(Collections.singletonMap("a", 0)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
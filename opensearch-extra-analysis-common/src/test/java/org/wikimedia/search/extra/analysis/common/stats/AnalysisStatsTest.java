@@ -0,0 +1,98 @@
+package org.wikimedia.search.extra.analysis.common.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttributeImpl;
+import org.junit.Test;
+import org.opensearch.common.io.stream.BytesStreamOutput;
+
+public class AnalysisStatsTest {
+
+    private final CharTermAttribute termAtt = new CharTermAttributeImpl();
+
+    /* "Stem" the word as a filter would. */
+    private void stem(TokenStats stats, String word, String stem, boolean known) {
+        termAtt.setEmpty().append(word);
+        stats.start(termAtt);
+        termAtt.setEmpty().append(stem);
+        if (known) {
+            stats.cacheHit();
+        } else {
+            stats.cacheMiss();
+        }
+        stats.end(termAtt);
+    }
+
+    @Test
+    public void testCountsAreAddedOnFlush() {
+        AnalysisStats stats = new AnalysisStats("serbian_stemmer");
+        TokenStats tokenStats = stats.forFilter("wiki", "stemmer").newTokenStats();
+        stem(tokenStats, "vikipediju", "vikipedij", false);
+        stem(tokenStats, "na", "na", false);
+        stem(tokenStats, "vikipediju", "vikipedij", true);
+        tokenStats.transliterated();
+        assertThat(stats.snapshot().get(0).tokens()).isZero();
+
+        tokenStats.flush();
+        FilterStatsSnapshot snapshot = stats.snapshot().get(0);
+        assertThat(snapshot.index()).isEqualTo("wiki");
+        assertThat(snapshot.filter()).isEqualTo("stemmer");
+        assertThat(snapshot.tokens()).isEqualTo(3);
+        assertThat(snapshot.changed()).isEqualTo(2);
+        assertThat(snapshot.transliterated()).isEqualTo(1);
+        assertThat(snapshot.cacheHits()).isEqualTo(1);
+        assertThat(snapshot.cacheMisses()).isEqualTo(2);
+
+        // counts start again from zero, and instances add up
+        tokenStats.flush();
+        TokenStats other = stats.forFilter("wiki", "stemmer").newTokenStats();
+        stem(other, "na", "na", true);
+        stem(tokenStats, "na", "na", true);
+        other.flush();
+        tokenStats.flush();
+        assertThat(stats.snapshot().get(0).tokens()).isEqualTo(5);
+    }
+
+    @Test
+    public void testSampledTiming() {
+        AnalysisStats stats = new AnalysisStats("serbian_stemmer");
+        TokenStats tokenStats = stats.forFilter("wiki", "stemmer").newTokenStats();
+        for (int i = 0; i < 2 * TokenStats.SAMPLE_INTERVAL + 1; i++) {
+            stem(tokenStats, "vikipediju", "vikipedij", false);
+            // many short streams
+            tokenStats.flush();
+        }
+        FilterStatsSnapshot snapshot = stats.snapshot().get(0);
+        assertThat(snapshot.tokens()).isEqualTo(2 * TokenStats.SAMPLE_INTERVAL + 1);
+        assertThat(snapshot.timedTokens()).isEqualTo(2);
+        assertThat(snapshot.estimatedNanos()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void testByIndexAndFilter() {
+        AnalysisStats stats = new AnalysisStats("serbian_stemmer");
+        stats.forFilter("wiki_b", "stemmer");
+        stats.forFilter("wiki_a", "stemmer_b");
+        stats.forFilter("wiki_a", "stemmer_a");
+        assertThat(stats.forFilter("wiki_a", "stemmer_a")).isSameAs(stats.forFilter("wiki_a", "stemmer_a"));
+        assertThat(stats.snapshot()).extracting(s -> s.index() + "/" + s.filter())
+            .containsExactly("wiki_a/stemmer_a", "wiki_a/stemmer_b", "wiki_b/stemmer");
+
+        stats.removeIndex("wiki_a");
+        assertThat(stats.snapshot()).extracting(FilterStatsSnapshot::index).containsExactly("wiki_b");
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+        FilterStatsSnapshot snapshot = new FilterStatsSnapshot("wiki", "stemmer", 300, 200, 100, 250, 50, 4, 400);
+        assertThat(snapshot.estimatedNanos()).isEqualTo(30_000);
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            snapshot.writeTo(out);
+            assertThat(new FilterStatsSnapshot(out.bytes().streamInput()))
+                .usingRecursiveComparison().isEqualTo(snapshot);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package org.wikimedia.search.extra.analysis.esperanto;
 
-import static java.util.Collections.unmodifiableSet;
+import static org.apache.lucene.analysis.CharArraySet.unmodifiableSet;
 
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.wikimedia.search.extra.analysis.common.BatchStemmer;
+import org.wikimedia.search.extra.analysis.common.CharClassifier;
+import org.wikimedia.search.extra.analysis.common.InPlaceStemmer;
+import org.wikimedia.search.extra.analysis.common.SuffixTrie;
 
 /*
  * This file was forked from this repo under a GPLv3 license:
@@ -22,249 +27,438 @@ import java.util.Set;
  * Significant refactoring done to reduce complexity of stemWord(), and to front-load hyphen
  * processing to reduce overall complexity.
  *
+ * Reworked to stem in place over a char buffer, without allocating per word.
+ *
+ * Word lists moved to the esperanto_rules.txt rule file (see EsperantoStemmerRules).
+ *
+ * Suffixes and number endings looked up in tries of reversed words (see SuffixTrie), each
+ * walked once from the end of the word.
+ *
  * All modifications are also available under a GPLv3 license.
  *
  */
 
-public class EsperantoStemmer {
-
-    private static final Set<String> STEMMER_SUFFIXES = unmodifiableSet(initStemmerSuffixes());
-    private static final Set<String> STEMMER_EXCEPTIONS = unmodifiableSet(initStemmerExceptions());
-    private static final Set<String> BASIC_NUMERALS = unmodifiableSet(initNumerals());
-
-    // words with limited inflections
-    private static final Set<String> PLURAL_DIRECT_CHECKS = unmodifiableSet(initPluralDirectChecks());
+public class EsperantoStemmer implements InPlaceStemmer {
 
     // bare suffixes: assumes that -j and -n (as in -oj, -on, -ojn) are stripped elsewhere
-    private static final Set<String> BARE_SUFFIXES = unmodifiableSet(new HashSet<>(
-            Arrays.asList("-o", "-a", "-e", "-")));
-
-    private static final Set<Character> VOWELS = unmodifiableSet(new HashSet<>(
-            Arrays.asList('a', 'e', 'i', 'o', 'u')));
+    private static final String[] BARE_SUFFIXES = {"-o", "-a", "-e", "-"};
 
     private static final String[] BIG_NUMBER_WORDS = {"mil", "cent", "dek"}; // 1000, 100, 10
 
-    private static final String[] PLURAL_DIR_OBJ_SUFFIXES = {"jn", "n", "j"}; // longest first
+    // flags of the words in the number trie
+    private static final int NUMERAL = 1; // a numeral, if it is the whole word
+    private static final int NUMBER_END = 2; // a big number word and a numeral, ending a number
+
+    private static final String[] PLURAL_DIR_OBJ_SUFFIXES = {"jn", "n", "j"};
+    private static final int MAX_PLURAL_DIR_OBJ_LENGTH = 2;
+
+    // flags of the words in the suffix trie
+    private static final int SUFFIX = 1; // a suffix from the rules
+    private static final int BARE_SUFFIX = 2;
+    private static final int PLURAL_DIR_OBJ = 4;
 
-    private static final int MAX_SUFFIX_LENGTH = initMaxSuffixLength();
     private static final int MIN_STEM_LENGTH = 2;
 
-    private static final Pattern INFLECTED_NUMBER_PAT = Pattern.compile("^(.*[0-9])(a|an|aj|ajn|j|oj|ojn)$");
+    // endings of numbers that are inflected without a hyphen, like "1960aj"; the number
+    // itself must end in a digit
+    private static final CharArraySet INFLECTED_NUMBER_ENDINGS = unmodifiableSet(new CharArraySet(
+            Arrays.asList("a", "an", "aj", "ajn", "j", "oj", "ojn"), false));
+    private static final int MAX_INFLECTED_NUMBER_ENDING_LENGTH = 3;
+
+    // classes of chars, to tell which steps can apply to a word with a single scan
+    private static final int VOWEL = 1;
+    private static final int DASH = 2;
+    private static final int DIGIT = 4;
+    // the second char of an X-system spelling, or a combining circumflex or breve
+    private static final int X_MARK = 8;
+    // the second char of an H-system spelling
+    private static final int H_MARK = 16;
+    private static final CharClassifier CLASSIFIER = CharClassifier.builder()
+        .add(VOWEL, "aeiou")
+        .add(DASH, "-")
+        .add(DIGIT, '0', '9')
+        .add(X_MARK, "xX\u0302\u0306")
+        .add(H_MARK, "hH")
+        .build();
+
+    // the letters that take a supersign, and the same letters with it, at the same index
+    private static final String SUPERSIGN_BASES = "cghjsuCGHJSU";
+    private static final String SUPERSIGNED = "ĉĝĥĵŝŭĈĜĤĴŜŬ";
+
+    private final EsperantoStemmerRules rules;
+
+    // without a vowel or a dash, a word has no ending or bare suffix to strip, and no suffix
+    // to remove, as long as all suffixes have a vowel
+    private final boolean vowellessWordsAreStems;
+
+    // the numerals, and the endings of numbers, to recognize numbers in one backward scan
+    private final SuffixTrie numbers;
+
+    // the suffixes, bare suffixes and plural/direct object endings, to find each of them in one
+    // backward scan
+    private final SuffixTrie suffixes;
+
+    private final boolean xSystem;
+    private final boolean hSystem;
+    // the classes of words that may need their spelling normalized
+    private final int markClasses;
+
+    public EsperantoStemmer() {
+        this(EsperantoStemmerRules.defaults());
+    }
+
+    public EsperantoStemmer(EsperantoStemmerRules rules) {
+        this(rules, false, false);
+    }
+
+    /**
+     * A stemmer that also normalizes other spellings of ĉ, ĝ, ĥ, ĵ, ŝ and ŭ before stemming, so
+     * that the word is stemmed, and found in the exceptions and numerals, as if it were spelled
+     * with them. The normalized word is written back to the buffer, so the stem is then no longer
+     * a prefix of the original word.
+     *
+     * @param xSystem normalize the X-system (cx, gx, hx, jx, sx, ux), and a combining circumflex
+     *     or breve after the base letter
+     * @param hSystem normalize the H-system (ch, gh, hh, jh, sh), which is ambiguous: an h after
+     *     one of those letters is sometimes just an h, as in "flughaveno"
+     */
+    public EsperantoStemmer(EsperantoStemmerRules rules, boolean xSystem, boolean hSystem) {
+        this.rules = rules;
+        this.vowellessWordsAreStems = everySuffixHasAVowel(rules);
+        this.numbers = numberTrie(rules);
+        this.suffixes = suffixTrie(rules);
+        this.xSystem = xSystem;
+        this.hSystem = hSystem;
+        this.markClasses = (xSystem ? X_MARK : 0) | (hSystem ? H_MARK : 0);
+    }
 
     // Given a word, return its stemmed form
     public String stemWord(String word) {
+        if (word == null) {
+            return null;
+        }
+        char[] buffer = word.toCharArray();
+        return new String(buffer, 0, stem(buffer, word.length()));
+    }
+
+    /**
+     * Stem a batch of words, e.g., in an offline job. Each distinct word is stemmed once, and
+     * large batches are split across the common {@link ForkJoinPool}; see {@link BatchStemmer}.
+     *
+     * @param words the words to stem; null words get null stems
+     * @param stems where to write the stem of each word, at the same index
+     */
+    public void stemWords(String[] words, String[] stems) {
+        BatchStemmer.stemAll(this, words, stems);
+    }
+
+    /**
+     * Stem a batch of words on the given pool, like {@link #stemWords(String[], String[])}.
+     */
+    public void stemWords(String[] words, String[] stems, ForkJoinPool pool) {
+        BatchStemmer.stemAll(this, words, stems, pool);
+    }
+
+    /**
+     * Stems are a prefix of the word, so no room is needed beyond the word itself.
+     */
+    @Override
+    public int bufferLength(int length) {
+        return length;
+    }
+
+    /**
+     * Stem the word in the buffer. Esperanto stems are always a prefix of the word, so only the
+     * length of the stem is returned, and the buffer is left untouched, unless the spelling of
+     * the word was normalized.
+     *
+     * @param buffer the word to stem
+     * @param length the length of the word
+     * @return the length of the stem
+     */
+    @Override
+    public int stem(char[] buffer, int length) {
+        return stem(buffer, length, CLASSIFIER.classify(buffer, length));
+    }
+
+    /* Lowercase a word in place, returning the classes of its chars for stem(char[], int, int),
+     * so that they are found in the same scan. ĉ, ĝ, ĥ, ĵ, ŝ and ŭ keep their diacritics.
+     */
+    static int lowercase(char[] buffer, int length) {
+        return CLASSIFIER.lowercaseAndClassify(buffer, length);
+    }
+
+    /* Normalize the spelling of a word in place, as this stemmer would before stemming it,
+     * returning its new length.
+     */
+    int normalize(char[] buffer, int length) {
+        if (markClasses == 0 || (CLASSIFIER.classify(buffer, length) & markClasses) == 0) {
+            return length;
+        }
+        return normalizeSupersigns(buffer, length);
+    }
+
+    /* Stem a word, given the classes of its chars. */
+    int stem(char[] buffer, int length, int classes) {
+        if ((classes & markClasses) != 0) {
+            // the classes are still those of the word before normalizing; it may have lost a
+            // vowel, to ux, which only keeps the fast paths below from being taken
+            length = normalizeSupersigns(buffer, length);
+        }
 
         // Check if it is an exception to stemming
-        if (isExceptionOrNumber(word)) {
-            return word;
+        if (isExceptionOrNumber(buffer, length)) {
+            return length;
         }
 
         // match strings ending in numbers that are inflected without a hyphen
         // they really should use a hyphen, but we know what they meant
-        Matcher inflectedNumberMatcher = INFLECTED_NUMBER_PAT.matcher(word);
-        if (inflectedNumberMatcher.matches()) {
-            return inflectedNumberMatcher.group(1);
+        if ((classes & DIGIT) != 0) {
+            int inflectedNumberLength = inflectedNumberLength(buffer, length);
+            if (inflectedNumberLength >= 0) {
+                return inflectedNumberLength;
+            }
         }
 
-        int localMinStemLength = Math.max(MIN_STEM_LENGTH, firstVowelPos(word) + 1);
-        int pluralDirectOffset = calcPluralDirectOffset(word);
+        if ((classes & (VOWEL | DASH)) == 0 && vowellessWordsAreStems) {
+            return length;
+        }
+
+        int localMinStemLength = Math.max(MIN_STEM_LENGTH, firstVowelPos(buffer, length) + 1);
+        int pluralDirectOffset = calcPluralDirectOffset(buffer, length);
 
-        String stem = word; // make a copy to pare down to the stem
+        int stemLength = length; // pare down to the stem
 
         if (pluralDirectOffset > 0) {
             // remove plural (-j) and direct object (-n) suffixes and check for exceptions
-            stem = word.substring(0, word.length() - pluralDirectOffset);
-            if (PLURAL_DIRECT_CHECKS.contains(stem) || STEMMER_EXCEPTIONS.contains(stem)) {
-                return stem;
+            stemLength = length - pluralDirectOffset;
+            if (rules.pluralDirectChecks.contains(buffer, 0, stemLength)
+                    || rules.exceptions.contains(buffer, 0, stemLength)) {
+                return stemLength;
             }
         }
 
-        if (BARE_SUFFIXES.contains(stem)) {
-            // if the token is a bare suffix, like -o, -a, -e, etc., return original word
-            // to include -j and -n removed via pluralDirectOffset
-            return word;
-        }
+        // find and remove a bare suffix or any known suffix, along with any plural/direct object
+        // endings
+        return stripSuffix(buffer, length, stemLength, localMinStemLength);
+    }
 
-        // deal with hyphens, which are used to offset inflections for non-standard words
-        // like "1-oj" as the plural of "1". Compare to English apostrophe, as in "3's".
-        int lastDash = stem.lastIndexOf('-'); // find the last dash, if there is one
+    private static boolean isVowel(char ch) {
+        switch (ch) {
+            case 'a':
+            case 'e':
+            case 'i':
+            case 'o':
+            case 'u':
+                return true;
+            default:
+                return false;
+        }
+    }
 
-        if (lastDash != -1) {
-            String ending = stem.substring(lastDash);
-            // if everything after the last dash is a bare suffix, strip it and we are done.
-            if (BARE_SUFFIXES.contains(ending)) {
-                return stem.substring(0, lastDash);
+    /* Replace X-system and H-system spellings, and combining supersigns, as enabled, with the
+     * letters they stand for, in a single forward pass. Returns the new length.
+     */
+    private int normalizeSupersigns(char[] buffer, int length) {
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = buffer[i];
+            if (i + 1 < length) {
+                int base = SUPERSIGN_BASES.indexOf(ch);
+                if (base >= 0 && isSupersignMark(buffer[i + 1], Character.toLowerCase(ch) == 'u')) {
+                    ch = SUPERSIGNED.charAt(base);
+                    i++;
+                }
             }
+            buffer[out++] = ch;
+        }
+        return out;
+    }
+
+    private boolean isSupersignMark(char mark, boolean isU) {
+        switch (mark) {
+            case 'x':
+            case 'X':
+                return xSystem;
+            case '\u0302': // combining circumflex
+                return xSystem && !isU;
+            case '\u0306': // combining breve
+                return xSystem && isU;
+            case 'h':
+            case 'H':
+                // the H-system writes ŭ as a plain u
+                return hSystem && !isU;
+            default:
+                return false;
         }
+    }
 
-        // find and remove any known suffix, along with any plural/direct object endings
-        return word.substring(0, word.length() - pluralDirectOffset -
-            findSuffixLength(stem, localMinStemLength));
+    private static boolean everySuffixHasAVowel(EsperantoStemmerRules rules) {
+        for (Object suffix : rules.suffixes) {
+            char[] chars = (char[]) suffix;
+            if (firstVowelPos(chars, chars.length) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     // find the position of the first vowel in the word; it must be part of the stem
-    private static int firstVowelPos(String word) {
-        for (int i = 0; i < word.length(); i++) {
-            if (VOWELS.contains(word.charAt(i))) {
+    private static int firstVowelPos(char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            if (isVowel(buffer[i])) {
                 return i;
             }
         }
         return -1;
     }
 
-    // check exceptions: null, on explicit list, or ends with what looks like a complex number
-    private static boolean isExceptionOrNumber(String word) {
+    // check exceptions: on explicit list, or ends with what looks like a complex number
+    private boolean isExceptionOrNumber(char[] buffer, int length) {
         // check lists of explicit exceptions
-        if (word == null || STEMMER_EXCEPTIONS.contains(word) || BASIC_NUMERALS.contains(word)) {
-            return true;
+        return rules.exceptions.contains(buffer, 0, length) || isNumber(buffer, length);
+    }
+
+    /* Whether the word is a numeral, or ends in what looks like a complex number: a big number
+     * element (ten, hundred, thousand) followed by a numeral, as in "dudekkvin" or "XYZcentdu".
+     * Whatever comes before that ending isn't checked.
+     */
+    private boolean isNumber(char[] buffer, int length) {
+        int node = SuffixTrie.ROOT;
+        for (int i = length - 1; i >= 0; i--) {
+            node = numbers.child(node, buffer[i]);
+            if (node < 0) {
+                return false;
+            }
+            int flags = numbers.value(node);
+            if ((flags & NUMBER_END) != 0 || ((flags & NUMERAL) != 0 && i == 0)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        // find the last big number element (ten, hundred, thousand) and check if the rest
-        // of the word is a basic number. if so, we're done.
-        int numeralIndex = -1;
-        for (String bigNumWord : BIG_NUMBER_WORDS) {
-            int index = word.lastIndexOf(bigNumWord);
-            if (index != -1 && index >= numeralIndex) {
-                numeralIndex = index + bigNumWord.length();
+    /* The numerals, each also after each big number word. The big number word must be the last
+     * one in the word, so numerals that contain one can't end a number that way.
+     */
+    private static SuffixTrie numberTrie(EsperantoStemmerRules rules) {
+        Map<String, Integer> words = new HashMap<>();
+        for (Object numeral : rules.numerals) {
+            String word = new String((char[]) numeral);
+            words.merge(word, NUMERAL, (a, b) -> a | b);
+            if (Arrays.stream(BIG_NUMBER_WORDS).noneMatch(word::contains)) {
+                for (String bigNumWord : BIG_NUMBER_WORDS) {
+                    words.merge(bigNumWord + word, NUMBER_END, (a, b) -> a | b);
+                }
             }
         }
-        if (numeralIndex != -1) {
-            return BASIC_NUMERALS.contains(word.substring(numeralIndex));
+        return new SuffixTrie(words);
+    }
+
+    /* Length of the number in a number inflected without a hyphen, like "1960aj", or -1 if the
+     * word is not one. The number is everything up to and including the last digit, which can't
+     * contain line breaks, and the rest of the word must be one of the inflected number endings.
+     */
+    private static int inflectedNumberLength(char[] buffer, int length) {
+        int lastDigit = -1;
+        for (int i = length - 1; i >= 0 && i >= length - MAX_INFLECTED_NUMBER_ENDING_LENGTH - 1; i--) {
+            if (buffer[i] >= '0' && buffer[i] <= '9') {
+                lastDigit = i;
+                break;
+            }
         }
-        return false;
+        if (lastDigit == -1 || !INFLECTED_NUMBER_ENDINGS.contains(buffer, lastDigit + 1, length - lastDigit - 1)) {
+            return -1;
+        }
+        for (int i = 0; i < lastDigit; i++) {
+            switch (buffer[i]) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return -1;
+                default:
+                    break;
+            }
+        }
+        return lastDigit + 1;
     }
 
     // calculate the offset of plural marker (-j) and direct object marker (-n) from end of string
-    private static int calcPluralDirectOffset(String word) {
-        for (String suffix : PLURAL_DIR_OBJ_SUFFIXES) {
-            if (word.equals(suffix)) {
-                // don't trim the whole string as a suffix
-                return 0;
+    private int calcPluralDirectOffset(char[] buffer, int length) {
+        int offset = 0;
+        int node = SuffixTrie.ROOT;
+        // the walk finds the endings shortest first, so a longer one replaces a shorter one
+        for (int i = length - 1; i >= 0 && i >= length - MAX_PLURAL_DIR_OBJ_LENGTH; i--) {
+            node = suffixes.child(node, buffer[i]);
+            if (node < 0) {
+                break;
             }
-            if (word.endsWith(suffix)) {
-                int suffixLength = suffix.length();
-                char prevChar = word.charAt(word.length() - suffixLength - 1);
-                if (prevChar == '-' || VOWELS.contains(prevChar)) {
-                    return suffixLength;
+            if ((suffixes.value(node) & PLURAL_DIR_OBJ) != 0) {
+                if (i == 0) {
+                    // don't trim the whole string as a suffix
+                    return 0;
+                }
+                char prevChar = buffer[i - 1];
+                if (prevChar == '-' || isVowel(prevChar)) {
+                    offset = length - i;
                 }
             }
         }
-        return 0;
+        return offset;
     }
 
-    /*  String findSuffixLength()
+    /*  int stripSuffix()
      *
-     *  find the length of the longest remaining known suffix of input string "stem"
+     *  walk back from the end of the stem and return its length without its suffix: the whole
+     *  word if the stem is a bare suffix, the stem up to its last dash if what follows the dash
+     *  is a bare suffix, or else the stem without the longest known suffix
      *
-     *  stem: a copy of the word minus any plural -j or direct obj -n that we found, which
-     *      we are going to trim down to the best suffix
+     *  buffer, length: the word
+     *  stemLength: the word minus any plural -j or direct obj -n that we found, which we are
+     *      going to trim down to the best suffix
      *  localMinStemLength: minimum stem length for this word == position of first vowel in
      *      the word or the global MIN_STEM_LENGTH, whichever is greater
      */
-    private static int findSuffixLength(String stem, int localMinStemLength) {
-        int initialStemLength = stem.length();
-
-        // skip to either the maximum suffix, or after the min stem length,
-        // whichever is further along
-        int skipOver = Math.max(initialStemLength - MAX_SUFFIX_LENGTH, localMinStemLength);
-
-        if (initialStemLength >= skipOver) {
-            // if there's anything we should be skipping, skip it
-            stem = stem.substring(skipOver);
-        } else {
-            // otherwise, there's no plausible suffix
-            return 0;
-        }
-
-        while ((!STEMMER_SUFFIXES.contains(stem) && !stem.isEmpty())
-               || (initialStemLength - stem.length() < localMinStemLength)) {
-            // while not a known suffix and not empty, or stem is too short for this suffix,
-            // keep trying...
-            stem = stem.substring(1);
+    private int stripSuffix(char[] buffer, int length, int stemLength, int localMinStemLength) {
+        int suffixStart = stemLength;
+        int node = SuffixTrie.ROOT;
+        for (int i = stemLength - 1; i >= 0; i--) {
+            node = suffixes.child(node, buffer[i]);
+            if (node < 0) {
+                break;
+            }
+            int flags = suffixes.value(node);
+            if ((flags & BARE_SUFFIX) != 0) {
+                // if the token is a bare suffix, like -o, -a, -e, etc., return original word
+                // to include -j and -n removed via pluralDirectOffset.
+                // otherwise, deal with hyphens, which are used to offset inflections for
+                // non-standard words like "1-oj" as the plural of "1" (compare to English
+                // apostrophe, as in "3's"): bare suffixes start with their only dash, so this is
+                // the last dash, and everything after it is a bare suffix; strip it and we are done.
+                return i == 0 ? length : i;
+            }
+            if ((flags & SUFFIX) != 0 && i >= localMinStemLength) {
+                // the suffixes are found shortest first; keep the longest
+                suffixStart = i;
+            }
         }
-
-        return stem.length();
+        return suffixStart;
     }
 
-    // Suffixes are sourced from https://en.wikipedia.org/wiki/Esperanto_grammar
-    private static Set<String> initStemmerSuffixes() {
-        return new HashSet<>(Arrays.asList(
-            // Part of speech suffixes
-            "o", "a", "e", "i",
-            // Verb conjugations
-            // Mood
-            "u", "us",
-            // Indicative
-            "is", "as", "os",
-            // Voice
-            "inta", "anta", "onta", "ita", "ata", "ota",
-            // Compound Tense
-            "intas", "antas", "ontas", "itas", "atas", "otas", "intis", "antis", "ontis",
-            "itis", "atis", "otis", "intos", "antos", "ontos", "itos", "atos", "otos", "intus",
-            "antus", "ontus", "itus", "atus", "otus",
-            // Nominal participles
-            "inte", "ante", "onte", "ite", "ate", "ote", "into", "anto", "onto", "ito", "ato", "oto"
-        ));
-    }
-
-    // words that look like they get stemmed, but don't
-    private static Set<String> initStemmerExceptions() {
-        return new HashSet<>(Arrays.asList(
-            // The article
-            "la",
-            // Conjunctions
-            "kaj", "ke", "kie", "minus", "plus", "se",
-            // Interjections
-            "aha", "bis", "damne", "dirlididi", "fi", "forfikiĝu", "ha", "ho", "hola", "hu",
-            "hura", "muu", "nedankinde", "nu", "oho", "ve",
-            // Pronouns
-            "aliu", "ĉio", "ĉiu", "ili", "io", "iŝi", "iu", "kio", "kiu", "nenio", "neniu",
-            "oni", "tio", "tiu",
-            // Determiners
-            "ĉies", "ia", "kelka", "kia", "nenia", "tia", "tie",
-            // Prepositions
-            "cis", "ĉe", "da", "de", "disde", "ekde", "en", "ĝis", "je", "kun", "na", "po",
-            "pri", "pro", "sen", "tra",
-            // Adverbs
-            "malplej", "malpli", "plej", "pli", "plu", "tamen",
-            // Particles
-            "ajn", "ĉu", "ĉi", "jen", "ju", "ne",
-            // Dates
-            "a", "an",
-            // Roman numerals to 20
-            "i", "ii", "iii", "vi", "vii", "viii", "xi", "xii", "xiii", "xvi", "xvii", "xviii",
-            // irregular numeral
-            "unu"
-        ));
-    }
-
-    // list of words with limited inflections
-    private static Set<String> initPluralDirectChecks() {
-        return new HashSet<>(Arrays.asList(
-            // pronouns
-            "ci", "ĝi", "gi", "iŝi", "li", "mi", "ni", "ri", "ŝi", "si", "ŝli", "vi",
-            // determiners
-            "ia", "io", "iu"
-        ));
-    }
-
-    // basic numerals 1-9
-    private static Set<String> initNumerals() {
-        return new HashSet<>(Arrays.asList(
-            "unu", "du", "tri", "kvar", "kvin", "ses", "sep", "ok", "naŭ"
-        ));
-    }
-
-    // find the length of the longest suffix on our list of suffixes
-    private static int initMaxSuffixLength() {
-        int maxLen = -1;
-        for (String suffix : STEMMER_SUFFIXES) {
-            int len = suffix.length();
-            if (len > maxLen) {
-                maxLen = len;
-            }
+    private static SuffixTrie suffixTrie(EsperantoStemmerRules rules) {
+        Map<String, Integer> words = new HashMap<>();
+        for (Object suffix : rules.suffixes) {
+            words.merge(new String((char[]) suffix), SUFFIX, (a, b) -> a | b);
+        }
+        for (String suffix : BARE_SUFFIXES) {
+            words.merge(suffix, BARE_SUFFIX, (a, b) -> a | b);
+        }
+        for (String suffix : PLURAL_DIR_OBJ_SUFFIXES) {
+            words.merge(suffix, PLURAL_DIR_OBJ, (a, b) -> a | b);
         }
-        return maxLen;
+        return new SuffixTrie(words);
     }
 
 }
@@ -0,0 +1,149 @@
+package org.wikimedia.search.extra.analysis.esperanto;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.lucene.analysis.CharArraySet.unmodifiableSet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.wikimedia.search.extra.analysis.common.RuleFile;
+
+/**
+ * The word lists of {@link EsperantoStemmer}: suffixes, exceptions, words with limited
+ * inflections and numerals.
+ *
+ * <p>The lists are kept in the {@value #RULES} rule file (see {@link RuleFile}), in
+ * {@code src/main/rules}. When the plugin is built, {@link #main(String[])} compiles them into
+ * the {@value #COMPILED} resource, which is loaded with a single read. Rules given with a
+ * filter's {@value RuleFile#PATH_SETTING} are read when the index is created.
+ */
+public final class EsperantoStemmerRules {
+
+    static final String RULES = "esperanto_rules.txt";
+    static final String COMPILED = "esperanto_rules.bin";
+
+    /** Version of the rule file format, and of the compiled form. */
+    static final int VERSION = 1;
+
+    private static final String CODEC = "EsperantoStemmerRules";
+
+    private static final String SUFFIXES = "suffixes";
+    private static final String EXCEPTIONS = "exceptions";
+    private static final String PLURAL_DIRECT_CHECKS = "plural_direct_checks";
+    private static final String NUMERALS = "numerals";
+
+    final CharArraySet suffixes;
+    final CharArraySet exceptions;
+    // words with limited inflections
+    final CharArraySet pluralDirectChecks;
+    final CharArraySet numerals;
+
+    private EsperantoStemmerRules(Collection<String> suffixes, Collection<String> exceptions,
+            Collection<String> pluralDirectChecks, Collection<String> numerals) {
+        this.suffixes = unmodifiableSet(new CharArraySet(suffixes, false));
+        this.exceptions = unmodifiableSet(new CharArraySet(exceptions, false));
+        this.pluralDirectChecks = unmodifiableSet(new CharArraySet(pluralDirectChecks, false));
+        this.numerals = unmodifiableSet(new CharArraySet(numerals, false));
+    }
+
+    /* Loaded on first use, so that rules from a file don't need the defaults. */
+    private static final class Defaults {
+        static final EsperantoStemmerRules RULES = loadDefaults();
+    }
+
+    /**
+     * The rules shipped with the plugin.
+     */
+    public static EsperantoStemmerRules defaults() {
+        return Defaults.RULES;
+    }
+
+    private static EsperantoStemmerRules loadDefaults() {
+        try {
+            try (InputStream stream = EsperantoStemmerRules.class.getResourceAsStream(COMPILED)) {
+                if (stream != null) {
+                    return read(new ByteArrayDataInput(stream.readAllBytes()));
+                }
+            }
+            // not compiled (e.g., when running from an IDE)
+            try (InputStream stream = EsperantoStemmerRules.class.getResourceAsStream(RULES)) {
+                if (stream == null) {
+                    throw new IllegalStateException("Neither " + COMPILED + " nor " + RULES + " is on the classpath");
+                }
+                return parse(new BufferedReader(new InputStreamReader(stream, UTF_8)), RULES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the Esperanto stemmer rules", e);
+        }
+    }
+
+    /**
+     * Read rules from a rule file.
+     *
+     * @param source where the rules come from, for error messages
+     * @throws IllegalArgumentException if the rules are malformed
+     */
+    public static EsperantoStemmerRules parse(BufferedReader reader, String source) throws IOException {
+        RuleFile file = RuleFile.parse(reader, source, VERSION, SUFFIXES, EXCEPTIONS, PLURAL_DIRECT_CHECKS, NUMERALS);
+        return new EsperantoStemmerRules(file.words(SUFFIXES), file.words(EXCEPTIONS),
+                file.words(PLURAL_DIRECT_CHECKS), file.words(NUMERALS));
+    }
+
+    /**
+     * Read rules from a rule file, e.g., one given with {@value RuleFile#PATH_SETTING}.
+     */
+    public static EsperantoStemmerRules parse(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+            return parse(reader, path.toString());
+        }
+    }
+
+    static EsperantoStemmerRules read(DataInput in) throws IOException {
+        CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+        return new EsperantoStemmerRules(in.readSetOfStrings(), in.readSetOfStrings(),
+                in.readSetOfStrings(), in.readSetOfStrings());
+    }
+
+    void write(DataOutput out) throws IOException {
+        CodecUtil.writeHeader(out, CODEC, VERSION);
+        for (CharArraySet set : new CharArraySet[] {suffixes, exceptions, pluralDirectChecks, numerals}) {
+            TreeSet<String> words = new TreeSet<>();
+            for (Object word : set) {
+                words.add(new String((char[]) word));
+            }
+            out.writeSetOfStrings(words);
+        }
+    }
+
+    /**
+     * Compile the rules at build time.
+     *
+     * <p>Usage: {@code EsperantoStemmerRules <rule file> <output file>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: EsperantoStemmerRules <rule file> <output file>");
+        }
+        EsperantoStemmerRules rules = parse(Paths.get(args[0]));
+        Path output = Paths.get(args[1]);
+        Files.createDirectories(output.getParent());
+        try (OutputStream stream = Files.newOutputStream(output)) {
+            rules.write(new OutputStreamDataOutput(stream));
+        }
+    }
+}
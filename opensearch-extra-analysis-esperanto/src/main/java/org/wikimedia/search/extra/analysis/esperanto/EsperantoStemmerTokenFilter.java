@@ -1,10 +1,17 @@
 package org.wikimedia.search.extra.analysis.esperanto;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.StemLookup;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.common.stats.TokenStats;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -12,10 +19,113 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 public class EsperantoStemmerTokenFilter extends TokenFilter {
 
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
     private static final EsperantoStemmer STEMMER = new EsperantoStemmer();
+    private final EsperantoStemmer stemmer;
+    /* Known stems from the memo and node cache, or null if both are disabled. Kept across reset(). */
+    private final StemLookup stems;
+    private final boolean preserveOriginal;
+    /* Whether to lowercase each term, in the same scan that sorts its chars for the stemmer. */
+    private final boolean lowercase;
+    /* The current word, when preserving originals. */
+    private char[] original = new char[0];
+    private int originalLength;
+    /* The stemmed token, when its original is still to be emitted. */
+    private State stemmed;
+    /* Counts for the node's analysis stats, or null if they aren't kept. */
+    private final TokenStats stats;
 
     public EsperantoStemmerTokenFilter(TokenStream in) {
+        this(in, 0, null);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none
+     */
+    public EsperantoStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache) {
+        this(in, memoSize, cache, false);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none
+     * @param preserveOriginal also emit each word at the position of its stem, unless they are
+     *     the same
+     */
+    public EsperantoStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache, boolean preserveOriginal) {
+        this(in, memoSize, cache, preserveOriginal, null);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none
+     * @param preserveOriginal also emit each word at the position of its stem, unless they are
+     *     the same
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    public EsperantoStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache, boolean preserveOriginal,
+            FilterStats stats) {
+        this(in, STEMMER, memoSize, cache, preserveOriginal, false, stats);
+    }
+
+    /**
+     * A filter that also lowercases each term, for the prebuilt {@link EsperantoAnalyzer}. Terms
+     * are lowercased before their stems are looked up, so the cache can be shared with other
+     * filters.
+     *
+     * @param cache node-wide stem cache, or null for none
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    EsperantoStemmerTokenFilter(TokenStream in, StemCache cache, FilterStats stats) {
+        this(in, STEMMER, 0, cache, false, true, stats);
+    }
+
+    /**
+     * A filter with a stemmer with other rules. The node cache holds stems by the shipped
+     * rules, so it isn't used.
+     *
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     */
+    public EsperantoStemmerTokenFilter(TokenStream in, EsperantoStemmer stemmer, int memoSize) {
+        this(in, stemmer, memoSize, false);
+    }
+
+    /**
+     * A filter with a stemmer with other rules. The node cache holds stems by the shipped
+     * rules, so it isn't used.
+     *
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param preserveOriginal also emit each word at the position of its stem, unless they are
+     *     the same
+     */
+    public EsperantoStemmerTokenFilter(TokenStream in, EsperantoStemmer stemmer, int memoSize,
+            boolean preserveOriginal) {
+        this(in, stemmer, memoSize, preserveOriginal, null);
+    }
+
+    /**
+     * A filter with a stemmer with other rules. The node cache holds stems by the shipped
+     * rules, so it isn't used.
+     *
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param preserveOriginal also emit each word at the position of its stem, unless they are
+     *     the same
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    public EsperantoStemmerTokenFilter(TokenStream in, EsperantoStemmer stemmer, int memoSize,
+            boolean preserveOriginal, FilterStats stats) {
+        this(in, stemmer, memoSize, null, preserveOriginal, false, stats);
+    }
+
+    private EsperantoStemmerTokenFilter(TokenStream in, EsperantoStemmer stemmer, int memoSize, StemCache cache,
+            boolean preserveOriginal, boolean lowercase, FilterStats stats) {
         super(in);
+        this.stemmer = stemmer;
+        stems = StemLookup.create(memoSize, cache);
+        this.preserveOriginal = preserveOriginal;
+        this.lowercase = lowercase;
+        this.stats = stats == null ? null : stats.newTokenStats();
     }
 
     /* Marked final because "the TokenStream-API in Lucene is based on the
@@ -26,13 +136,72 @@ public class EsperantoStemmerTokenFilter extends TokenFilter {
      */
     @Override
     public final boolean incrementToken() throws IOException {
+        if (stemmed != null) {
+            // the original goes right after its stem, at the same position
+            restoreState(stemmed);
+            stemmed = null;
+            termAtt.copyBuffer(original, 0, originalLength);
+            posIncAtt.setPositionIncrement(0);
+            return true;
+        }
         if (input.incrementToken()) {
-            String converted = STEMMER.stemWord(termAtt.toString());
-            termAtt.setEmpty().append(converted);
+            if (preserveOriginal) saveOriginal();
+            stem();
+            if (preserveOriginal && !isOriginal()) stemmed = captureState();
             return true;
         } else {
             return false;
         }
     }
 
+    private void stem() {
+        if (stats == null) {
+            stemTerm();
+            return;
+        }
+        stats.start(termAtt);
+        if (stemTerm()) {
+            stats.cacheHit();
+        } else {
+            stats.cacheMiss();
+        }
+        stats.end(termAtt);
+    }
+
+    /* Stem the term in place, returning whether its stem was already known. */
+    private boolean stemTerm() {
+        int classes = lowercase ? EsperantoStemmer.lowercase(termAtt.buffer(), termAtt.length()) : 0;
+        if (stems != null && stems.replaceWithStem(termAtt)) return true;
+        // the stem is written at the start of the term, usually by just truncating it
+        int length = termAtt.length();
+        termAtt.setLength(lowercase ? stemmer.stem(termAtt.buffer(), length, classes)
+                : stemmer.stem(termAtt.buffer(), length));
+        if (stems != null) stems.store(termAtt);
+        return false;
+    }
+
+    private void saveOriginal() {
+        originalLength = termAtt.length();
+        original = ArrayUtil.grow(original, originalLength);
+        System.arraycopy(termAtt.buffer(), 0, original, 0, originalLength);
+        // keep the original in the same spelling as its stem
+        originalLength = stemmer.normalize(original, originalLength);
+    }
+
+    private boolean isOriginal() {
+        return Arrays.equals(termAtt.buffer(), 0, termAtt.length(), original, 0, originalLength);
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        if (stats != null) stats.flush();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        stemmed = null;
+    }
+
 }
@@ -1,24 +1,189 @@
 package org.wikimedia.search.extra.analysis.esperanto;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
+import org.apache.lucene.analysis.TokenStream;
+import org.opensearch.action.ActionRequest;
+import org.opensearch.client.Client;
+import org.opensearch.cluster.metadata.IndexNameExpressionResolver;
+import org.opensearch.cluster.node.DiscoveryNodes;
+import org.opensearch.cluster.service.ClusterService;
+import org.opensearch.common.settings.ClusterSettings;
+import org.opensearch.common.settings.IndexScopedSettings;
+import org.opensearch.common.settings.Setting;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.settings.SettingsFilter;
+import org.opensearch.core.action.ActionResponse;
+import org.opensearch.core.common.io.stream.NamedWriteableRegistry;
+import org.opensearch.core.common.unit.ByteSizeUnit;
+import org.opensearch.core.common.unit.ByteSizeValue;
+import org.opensearch.core.index.Index;
+import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.env.Environment;
+import org.opensearch.env.NodeEnvironment;
+import org.opensearch.index.IndexModule;
+import org.opensearch.index.IndexSettings;
+import org.opensearch.index.analysis.PreBuiltAnalyzerProviderFactory;
 import org.opensearch.index.analysis.PreConfiguredTokenFilter;
+import org.opensearch.index.analysis.TokenFilterFactory;
+import org.opensearch.index.shard.IndexEventListener;
+import org.opensearch.indices.analysis.AnalysisModule;
+import org.opensearch.indices.analysis.PreBuiltCacheFactory.CachingStrategy;
+import org.opensearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
+import org.opensearch.plugins.ActionPlugin;
 import org.opensearch.plugins.AnalysisPlugin;
 import org.opensearch.plugins.Plugin;
+import org.opensearch.repositories.RepositoriesService;
+import org.opensearch.rest.RestController;
+import org.opensearch.rest.RestHandler;
+import org.opensearch.script.ScriptService;
+import org.opensearch.threadpool.ThreadPool;
+import org.opensearch.watcher.ResourceWatcherService;
+import org.wikimedia.search.extra.analysis.common.RuleFile;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.StemMemo;
+import org.wikimedia.search.extra.analysis.common.stats.AnalysisStats;
+import org.wikimedia.search.extra.analysis.common.stats.AnalysisStatsAction;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.common.stats.RestAnalysisStatsAction;
+import org.wikimedia.search.extra.analysis.common.stats.TransportAnalysisStatsAction;
 
 /**
  * Setup the Elasticsearch plugin.
  */
-public class ExtraAnalysisEsperantoPlugin extends Plugin implements AnalysisPlugin {
+public class ExtraAnalysisEsperantoPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
+
+    /**
+     * Approximate heap budget of the stem cache shared by all esperanto_stemmer filters on the
+     * node; 0 disables it.
+     */
+    public static final Setting<ByteSizeValue> STEM_CACHE_SIZE = Setting.byteSizeSetting(
+            "extra_analysis.esperanto.stem_cache_size",
+            new ByteSizeValue(8, ByteSizeUnit.MB),
+            new ByteSizeValue(0),
+            new ByteSizeValue(1, ByteSizeUnit.GB),
+            Setting.Property.NodeScope);
+
+    /**
+     * Gets the stats of the esperanto_stemmer filters of each node, as served by
+     * {@code GET /_extra_analysis/stats/esperanto_stemmer}.
+     */
+    public static final AnalysisStatsAction STATS_ACTION = new AnalysisStatsAction("esperanto_stemmer");
+
+    private final StemCache stemCache;
+    private final AnalysisStats stats = new AnalysisStats(STATS_ACTION.filterType());
+
+    public ExtraAnalysisEsperantoPlugin(Settings settings) {
+        stemCache = StemCache.create(STEM_CACHE_SIZE.get(settings).getBytes());
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Collections.singletonList(STEM_CACHE_SIZE);
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+            ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+            NamedXContentRegistry xContentRegistry, Environment environment, NodeEnvironment nodeEnvironment,
+            NamedWriteableRegistry namedWriteableRegistry, IndexNameExpressionResolver indexNameExpressionResolver,
+            Supplier<RepositoriesService> repositoriesServiceSupplier) {
+        // injected into the stats action
+        return Collections.singletonList(stats);
+    }
+
+    @Override
+    public void onIndexModule(IndexModule indexModule) {
+        indexModule.addIndexEventListener(new IndexEventListener() {
+            @Override
+            public void afterIndexRemoved(Index index, IndexSettings indexSettings, IndexRemovalReason reason) {
+                stats.removeIndex(index.getName());
+            }
+        });
+    }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return Collections.singletonList(new ActionHandler<>(STATS_ACTION, TransportAnalysisStatsAction.class));
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
+            ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter,
+            IndexNameExpressionResolver indexNameExpressionResolver, Supplier<DiscoveryNodes> nodesInCluster) {
+        return Collections.singletonList(new RestAnalysisStatsAction(STATS_ACTION));
+    }
 
     /**
      * Register our stemmer.
      */
     @Override
     public List<PreConfiguredTokenFilter> getPreConfiguredTokenFilters() {
+        FilterStats filterStats = stats.forFilter(AnalysisStats.PRECONFIGURED, "esperanto_stemmer");
         return Collections.singletonList(PreConfiguredTokenFilter.singleton("esperanto_stemmer",
-                true, EsperantoStemmerTokenFilter::new));
+                true, tokenStream -> new EsperantoStemmerTokenFilter(tokenStream, 0, stemCache, false, filterStats)));
+    }
+
+    /**
+     * Register the esperanto analyzer, which lowercases and stems in one filter.
+     */
+    @Override
+    public List<PreBuiltAnalyzerProviderFactory> getPreBuiltAnalyzerProviderFactories() {
+        FilterStats filterStats = stats.forFilter(AnalysisStats.PRECONFIGURED, "esperanto");
+        return Collections.singletonList(new PreBuiltAnalyzerProviderFactory("esperanto",
+                CachingStrategy.ONE, () -> new EsperantoAnalyzer(stemCache, filterStats)));
+    }
+
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
+        return Collections.singletonMap("esperanto_stemmer", (isettings, env, name, settings) -> {
+            int memoSize = settings.getAsInt(StemMemo.SIZE_SETTING, 0);
+            // fail on bad settings when the index is created, not when analyzing
+            StemMemo.create(memoSize);
+            boolean preserveOriginal = settings.getAsBoolean("preserve_original", false);
+            FilterStats filterStats = stats.forFilter(isettings.getIndex().getName(), name);
+            boolean xSystem = settings.getAsBoolean("x_system", false);
+            boolean hSystem = settings.getAsBoolean("h_system", false);
+            String rulesPath = settings.get(RuleFile.PATH_SETTING);
+            // the node cache holds the stems of words as they are spelled, so a filter that
+            // normalizes spellings has its own stemmer, which doesn't use it
+            EsperantoStemmer stemmer = rulesPath == null && !xSystem && !hSystem ? null
+                    : new EsperantoStemmer(rulesPath == null ? EsperantoStemmerRules.defaults()
+                            : loadRules(env, rulesPath), xSystem, hSystem);
+            return new TokenFilterFactory() {
+                @Override
+                public String name() {
+                    return name;
+                }
+
+                @Override
+                public TokenStream create(TokenStream tokenStream) {
+                    if (stemmer != null) {
+                        return new EsperantoStemmerTokenFilter(tokenStream, stemmer, memoSize, preserveOriginal,
+                                filterStats);
+                    }
+                    return new EsperantoStemmerTokenFilter(tokenStream, memoSize, stemCache, preserveOriginal,
+                            filterStats);
+                }
+            };
+        });
+    }
+
+    private static EsperantoStemmerRules loadRules(Environment env, String rulesPath) {
+        Path path = env.configFile().resolve(rulesPath);
+        try {
+            return EsperantoStemmerRules.parse(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read [" + RuleFile.PATH_SETTING + "] " + path, e);
+        }
     }
 
 }
@@ -0,0 +1,70 @@
+package org.wikimedia.search.extra.analysis.esperanto;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.tests.analysis.BaseTokenStreamTestCase;
+import org.junit.Test;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+
+public class EsperantoAnalyzerTest extends BaseTokenStreamTestCase {
+
+    @Test
+    public void testAnalyze() throws IOException {
+        // capitalized exceptions and numerals are found, and the diacritics are kept
+        try (Analyzer analyzer = new EsperantoAnalyzer(null, null)) {
+            assertAnalyzesTo(analyzer, "La Vikipedio, ĈIES ŜIPOJN kaj ĜARDENOJ en MILNAŬCENTOKDEKKVAR",
+                    new String[] {"la", "vikipedi", "ĉies", "ŝip", "kaj", "ĝarden", "en", "milnaŭcentokdekkvar"},
+                    new int[] {0, 3, 14, 19, 26, 30, 39, 42}, // start offsets
+                    new int[] {2, 12, 18, 25, 29, 38, 41, 61}); // end offsets
+        }
+    }
+
+    @Test
+    public void testSameAsSeparateLowercaseFilter() throws IOException {
+        // the cache and the stemmer both see lowercased words
+        String text = "Ĉu ĈU ĉu Ĥoro ĤOROJN ĵaŭdon ĴAŬDON Ŭo 1960-AJN Post-Kant-Ajn XVI Ἀθῆναι İstanbul 𐐀𐐁 "
+                + "Milnaŭcentokdekkvar MILNAŬCENTOKDEKKVAR";
+        StemCache cache = StemCache.create(1 << 20);
+        try (Analyzer fused = new EsperantoAnalyzer(cache, null);
+             Analyzer chain = new Analyzer() {
+                 @Override
+                 protected TokenStreamComponents createComponents(String fieldName) {
+                     Tokenizer tok = new StandardTokenizer();
+                     TokenStream ts = new LowerCaseFilter(tok);
+                     ts = new EsperantoStemmerTokenFilter(ts, 0, cache);
+                     return new TokenStreamComponents(tok, ts);
+                 }
+             }) {
+            // twice, so that the second round is answered by the cache
+            for (int i = 0; i < 2; i++) {
+                assertEquals(terms(chain, text), terms(fused, text));
+            }
+        }
+    }
+
+    private static String terms(Analyzer analyzer, String text) throws IOException {
+        StringBuilder terms = new StringBuilder();
+        try (TokenStream ts = analyzer.tokenStream("", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.append(termAtt).append(' ');
+            }
+            ts.end();
+        }
+        return terms.toString();
+    }
+
+    @Test
+    public void testRandomStrings() throws IOException {
+        try (Analyzer analyzer = new EsperantoAnalyzer(StemCache.create(1 << 20), null)) {
+            checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+        }
+    }
+}
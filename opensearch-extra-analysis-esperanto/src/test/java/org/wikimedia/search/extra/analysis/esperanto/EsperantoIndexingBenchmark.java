@@ -0,0 +1,190 @@
+package org.wikimedia.search.extra.analysis.esperanto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.opensearch.Version;
+import org.opensearch.cluster.metadata.IndexMetadata;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.env.Environment;
+import org.opensearch.index.IndexSettings;
+import org.opensearch.index.analysis.IndexAnalyzers;
+import org.opensearch.test.IndexSettingsModule;
+import org.opensearch.test.OpenSearchTestCase;
+import org.junit.Test;
+
+/**
+ * Indexing throughput of the Esperanto analyzers from {@code prebuilt.json} and
+ * {@code memo.json}, compared to the same chain without the stemmer, on a synthetic
+ * corpus of a few megabytes.
+ *
+ * <p>It is too slow to run with the unit tests, so it isn't named like one. Run it with
+ * {@code mvn test -pl opensearch-extra-analysis-esperanto -Dtest=EsperantoIndexingBenchmark}.
+ */
+public class EsperantoIndexingBenchmark extends OpenSearchTestCase {
+
+    private static final int DOCS = 3000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int ROUNDS = 3;
+
+    private static final String[] FUNCTION_WORDS = {
+        "la", "de", "kaj", "en", "estas", "al", "unu", "ne", "por", "kun", "ke", "mi", "li", "ĝi",
+        "sed", "ili", "ŝi", "tiu", "kiu", "ankaŭ", "el", "pri", "ni", "vi", "post", "dum", "tio",
+        "kiel", "pli", "nur", "ĉe", "sur", "inter", "sub", "jam", "ĉar", "se", "da", "tre", "laŭ"};
+
+    private static final String[] ROOTS = {
+        "urb", "jar", "land", "lingv", "hom", "temp", "vort", "libr", "nom", "famili", "mond",
+        "lern", "parol", "skrib", "leg", "ven", "ir", "far", "hav", "dir", "vid", "sci", "labor",
+        "lok", "dom", "kresk", "grand", "bon", "nov", "util", "histori", "politik", "muzik",
+        "kultur", "popol", "regn", "mont", "river", "mar", "ŝip", "vetur", "aŭt", "fer", "ŝtat",
+        "reg", "gvid", "sport", "ludant", "teatr", "film", "art", "pentr", "poem", "verk", "kant",
+        "medicin", "natur", "best", "plant", "arb", "flor", "akv", "ter", "ĉiel", "sun", "stel",
+        "universitat", "lernej", "instru", "stud", "eksperiment", "inform", "komput", "program"};
+
+    private static final String[] AFFIXES = {
+        "", "", "", "", "ist", "ej", "ig", "iĝ", "in", "et", "eg", "ar", "ad", "ec"};
+
+    private static final String[] ENDINGS = {
+        "o", "o", "o", "on", "oj", "ojn", "a", "a", "an", "aj", "ajn", "e", "as", "is", "os", "us",
+        "u", "i", "anta", "inta", "ata", "ita"};
+
+    @Test
+    public void testIndexingThroughput() throws IOException {
+        IndexAnalyzers indexAnalyzers = indexAnalyzers();
+        List<String> corpus = corpus();
+
+        Throughput baseline = measure(indexAnalyzers.get("esperanto_baseline"), corpus);
+        logger.info("esperanto_baseline (no stemmer): {}", baseline);
+        for (String name : new String[] {"esperanto_prebuilt", "esperanto_memo"}) {
+            Throughput stemmed = measure(indexAnalyzers.get(name), corpus);
+            // net of the stemmer's cost, since stemming also leaves fewer distinct terms to index
+            logger.info("{}: {}, {} indexing time compared to no stemmer", name, stemmed,
+                    String.format(Locale.ROOT, "%+.0f%%", 100.0 * (stemmed.nanos - baseline.nanos) / baseline.nanos));
+            // the stemmer changes tokens, but never adds or removes them
+            assertEquals(baseline.tokens, stemmed.tokens);
+        }
+    }
+
+    private IndexAnalyzers indexAnalyzers() throws IOException {
+        Settings.Builder indexSettings = settings(Version.CURRENT);
+        for (String resource : new String[] {"prebuilt.json", "memo.json"}) {
+            indexSettings.loadFromStream(resource, getClass().getResourceAsStream(resource), false);
+        }
+        indexSettings.put("index.analysis.analyzer.esperanto_baseline.tokenizer", "standard")
+                .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT);
+        IndexSettings indexProps = IndexSettingsModule.newIndexSettings("test", indexSettings.build());
+        Settings settings = Settings.builder()
+                .put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
+                .build();
+        return createTestAnalysis(indexProps, settings, new ExtraAnalysisEsperantoPlugin(settings)).indexAnalyzers;
+    }
+
+    /*
+     * Documents of Zipf-distributed words: function words first, then content words made of
+     * a root, an optional affix and an ending, in a fixed random order.
+     */
+    private static List<String> corpus() {
+        Random random = new Random(42);
+        List<String> contentWords = new ArrayList<>();
+        for (String root : ROOTS) {
+            for (int i = 0; i < 20; i++) {
+                String prefix = random.nextInt(8) == 0 ? "mal" : "";
+                contentWords.add(prefix + root + AFFIXES[random.nextInt(AFFIXES.length)]
+                        + ENDINGS[random.nextInt(ENDINGS.length)]);
+            }
+        }
+        Collections.shuffle(contentWords, random);
+        List<String> words = new ArrayList<>(Arrays.asList(FUNCTION_WORDS));
+        words.addAll(contentWords);
+
+        double[] cumulative = new double[words.size()];
+        double total = 0;
+        for (int rank = 1; rank <= cumulative.length; rank++) {
+            total += 1.0 / rank;
+            cumulative[rank - 1] = total;
+        }
+
+        List<String> corpus = new ArrayList<>(DOCS);
+        for (int d = 0; d < DOCS; d++) {
+            StringBuilder doc = new StringBuilder();
+            int tokens = 100 + random.nextInt(400);
+            for (int t = 0; t < tokens; t++) {
+                int pos = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                String word = words.get(pos < 0 ? Math.min(-pos - 1, cumulative.length - 1) : pos);
+                if (t % 12 == 0) word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                doc.append(word).append(t % 12 == 11 ? ". " : " ");
+            }
+            corpus.add(doc.toString());
+        }
+        return corpus;
+    }
+
+    private static Throughput measure(Analyzer analyzer, List<String> corpus) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            index(analyzer, corpus);
+        }
+        Throughput best = null;
+        for (int i = 0; i < ROUNDS; i++) {
+            Throughput round = index(analyzer, corpus);
+            if (best == null || round.nanos < best.nanos) best = round;
+        }
+        return best;
+    }
+
+    private static Throughput index(Analyzer analyzer, List<String> corpus) throws IOException {
+        try (ByteBuffersDirectory dir = new ByteBuffersDirectory()) {
+            IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                    .setMergeScheduler(new SerialMergeScheduler())
+                    .setRAMBufferSizeMB(64);
+            long start = System.nanoTime();
+            try (IndexWriter writer = new IndexWriter(dir, config)) {
+                for (String text : corpus) {
+                    Document doc = new Document();
+                    doc.add(new TextField("text", text, Field.Store.NO));
+                    writer.addDocument(doc);
+                }
+                writer.commit();
+            }
+            long nanos = System.nanoTime() - start;
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                return new Throughput(corpus.size(), reader.getSumTotalTermFreq("text"), nanos);
+            }
+        }
+    }
+
+    private static final class Throughput {
+        final int docs;
+        final long tokens;
+        final long nanos;
+
+        Throughput(int docs, long tokens, long nanos) {
+            this.docs = docs;
+            this.tokens = tokens;
+            this.nanos = nanos;
+        }
+
+        double tokensPerSecond() {
+            return tokens * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%,d docs (%,d tokens) in %,d ms: %,.0f docs/sec, %,.0f tokens/sec",
+                    docs, tokens, nanos / 1_000_000, docs * 1e9 / nanos, tokensPerSecond());
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.wikimedia.search.extra.analysis.esperanto;
 
 import static java.util.Collections.singletonList;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
 import java.util.HashSet;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -13,8 +16,13 @@ import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopFilter;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.tests.analysis.BaseTokenStreamTestCase;
 import org.junit.Test;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.stats.AnalysisStats;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStatsSnapshot;
 
 public class EsperantoStemmerFilterTest extends BaseTokenStreamTestCase {
 
@@ -115,4 +123,152 @@ public class EsperantoStemmerFilterTest extends BaseTokenStreamTestCase {
             }
         };
     }
+
+    @Test
+    public void testMemo() throws IOException {
+        // repeated words are served from the memo and cache, which are kept across reuse
+        String input = "Bonvenon al Vikipedio bonvenon al vikipedio Bonvenon";
+        String[] output = new String[] {"bonven", "al", "vikipedi", "bonven", "al", "vikipedi", "bonven"};
+        StemCache cache = StemCache.create(1 << 20);
+        for (Analyzer ws : Arrays.asList(
+                newEsperantoStemmerWithMemo(2, null),
+                newEsperantoStemmerWithMemo(1024, null),
+                newEsperantoStemmerWithMemo(0, cache),
+                newEsperantoStemmerWithMemo(2, cache))) {
+            try {
+                assertAnalyzesTo(ws, input, output);
+                assertAnalyzesTo(ws, input, output);
+            } finally {
+                ws.close();
+            }
+        }
+    }
+
+    private Analyzer newEsperantoStemmerWithMemo(int memoSize, StemCache cache) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new LowerCaseFilter(tok);
+                ts = new EsperantoStemmerTokenFilter(ts, memoSize, cache);
+                return new TokenStreamComponents(tok, ts);
+            }
+        };
+    }
+
+    @Test
+    public void testCustomRules() throws IOException {
+        // other rules bypass the node cache
+        EsperantoStemmerRules rules = EsperantoStemmerRules.parse(new BufferedReader(new StringReader(
+                "version 1\n[suffixes]\no\n[exceptions]\nal\n[plural_direct_checks]\n[numerals]\n")), "test");
+        EsperantoStemmer stemmer = new EsperantoStemmer(rules);
+        for (int memoSize : new int[] {0, 1024}) {
+            try (Analyzer ws = new Analyzer() {
+                @Override
+                protected TokenStreamComponents createComponents(String fieldName) {
+                    Tokenizer tok = new WhitespaceTokenizer();
+                    return new TokenStreamComponents(tok, new EsperantoStemmerTokenFilter(tok, stemmer, memoSize));
+                }
+            }) {
+                assertAnalyzesTo(ws, "bonvenas al Vikipedio", new String[] {"bonvenas", "al", "Vikipedi"});
+            }
+        }
+    }
+
+    @Test
+    public void testPreserveOriginal() throws IOException {
+        // the original follows its stem at the same position, unless they are the same
+        String input = "Bonvenon al Vikipedio";
+        StemCache cache = StemCache.create(1 << 20);
+        for (int memoSize : new int[] {0, 1024}) {
+            try (Analyzer ws = newPreservingStemmer(memoSize, cache)) {
+                for (int i = 0; i < 2; i++) {
+                    assertTokenStreamContents(
+                            ws.tokenStream("", input),
+                            new String[] {"bonven", "bonvenon", "al", "vikipedi", "vikipedio"},
+                            new int[] {0, 0, 9, 12, 12}, // start offsets
+                            new int[] {8, 8, 11, 21, 21}, // end offsets
+                            null, // types, not supported
+                            new int[] {1, 0, 1, 1, 0}, // pos increments
+                            null, // pos size (unsupported)
+                            21, // last offset
+                            null, // keywordAtts, (unsupported)
+                            true);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testXSystem() throws IOException {
+        // the original is normalized, too
+        EsperantoStemmer stemmer = new EsperantoStemmer(EsperantoStemmerRules.defaults(), true, false);
+        for (int memoSize : new int[] {0, 1024}) {
+            try (Analyzer ws = new Analyzer() {
+                @Override
+                protected TokenStreamComponents createComponents(String fieldName) {
+                    Tokenizer tok = new WhitespaceTokenizer();
+                    TokenStream ts = new LowerCaseFilter(tok);
+                    ts = new EsperantoStemmerTokenFilter(ts, stemmer, memoSize, true);
+                    return new TokenStreamComponents(tok, ts);
+                }
+            }) {
+                for (int i = 0; i < 2; i++) {
+                    assertAnalyzesTo(ws, "Cxambrojn cxu Nauxdek Sxipo",
+                            new String[] {"ĉambr", "ĉambrojn", "ĉu", "naŭdek", "ŝip", "ŝipo"},
+                            new int[] {1, 0, 1, 1, 1, 0});
+                }
+            }
+        }
+    }
+
+    private Analyzer newPreservingStemmer(int memoSize, StemCache cache) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new LowerCaseFilter(tok);
+                ts = new EsperantoStemmerTokenFilter(ts, memoSize, cache, true);
+                return new TokenStreamComponents(tok, ts);
+            }
+        };
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        AnalysisStats stats = new AnalysisStats("esperanto_stemmer");
+        FilterStats filterStats = stats.forFilter("wiki", "stemmer");
+        try (Analyzer ws = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new LowerCaseFilter(tok);
+                ts = new EsperantoStemmerTokenFilter(ts, 1024, null, false, filterStats);
+                return new TokenStreamComponents(tok, ts);
+            }
+        }) {
+            // consumed by hand, as assertAnalyzesTo analyzes more than once
+            for (int i = 0; i < 16; i++) {
+                StringBuilder terms = new StringBuilder();
+                try (TokenStream ts = ws.tokenStream("", "Hundoj hundoj la hundo")) {
+                    CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+                    ts.reset();
+                    while (ts.incrementToken()) {
+                        terms.append(terms.length() == 0 ? "" : " ").append(termAtt);
+                    }
+                    ts.end();
+                }
+                assertEquals("hund hund la hund", terms.toString());
+            }
+        }
+        FilterStatsSnapshot snapshot = stats.snapshot().get(0);
+        assertEquals(64, snapshot.tokens());
+        // only "la" is left as it is
+        assertEquals(48, snapshot.changed());
+        assertEquals(0, snapshot.transliterated());
+        // the memo is kept across reuse, so only the first three words are missed
+        assertEquals(61, snapshot.cacheHits());
+        assertEquals(3, snapshot.cacheMisses());
+        assertEquals(1, snapshot.timedTokens());
+    }
 }
@@ -1,8 +1,11 @@
 package org.wikimedia.search.extra.analysis.esperanto;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.equalTo;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -23,16 +26,87 @@ public class EsperantoStemmerOpenSearchTest extends OpenSearchTestCase {
 
     @Test
     public void testPrebuilt() throws IOException {
+        assertAnalyzerAvailable("esperanto_prebuilt", "prebuilt.json");
+    }
+
+    @Test
+    public void testMemo() throws IOException {
+        assertAnalyzerAvailable("esperanto_memo", "memo.json");
+    }
+
+    @Test
+    public void testPreserveOriginal() throws IOException {
+        assertAnalyzerAvailable("esperanto_preserve", "preserve.json", "Bönven Bönvenon al Víkìpēdi Víkìpēdio");
+    }
+
+    @Test
+    public void testEsperanto() throws IOException {
+        // prebuilt, so it needs no settings
+        assertAnalyzerAvailable("esperanto", "prebuilt.json", "bönven al víkìpēdi");
+    }
+
+    @Test
+    public void testSupersignSystems() throws IOException {
+        Settings indexSettings = settings(Version.CURRENT)
+                .put("index.analysis.filter.xstemmer.type", "esperanto_stemmer")
+                .put("index.analysis.filter.xstemmer.x_system", true)
+                .put("index.analysis.filter.hstemmer.type", "esperanto_stemmer")
+                .put("index.analysis.filter.hstemmer.h_system", true)
+                .put("index.analysis.analyzer.esperanto_x.tokenizer", "standard")
+                .putList("index.analysis.analyzer.esperanto_x.filter", "xstemmer")
+                .put("index.analysis.analyzer.esperanto_h.tokenizer", "standard")
+                .putList("index.analysis.analyzer.esperanto_h.filter", "hstemmer")
+                .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
+                .build();
+        IndexSettings indexProps = IndexSettingsModule.newIndexSettings("test", indexSettings);
+        Settings settings = Settings.builder()
+                .put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
+                .build();
+        indexAnalyzers = createTestAnalysis(indexProps, settings,
+                new ExtraAnalysisEsperantoPlugin(settings)).indexAnalyzers;
+        match("esperanto_x", "cxambrojn nauxdek chambrojn", "ĉambr naŭdek chambr");
+        match("esperanto_h", "cxambrojn nauxdek chambrojn", "cxambr nauxdek ĉambr");
+    }
+
+    @Test
+    public void testRulesPath() throws IOException {
+        Path home = createTempDir();
+        Files.createDirectories(home.resolve("config"));
+        Files.write(home.resolve("config").resolve("custom_rules.txt"),
+                "version 1\n[suffixes]\no\n[exceptions]\nal\n[plural_direct_checks]\n[numerals]\n".getBytes(UTF_8));
+        Settings indexSettings = settings(Version.CURRENT)
+                .put("index.analysis.filter.custom.type", "esperanto_stemmer")
+                .put("index.analysis.filter.custom.rules_path", "custom_rules.txt")
+                .put("index.analysis.analyzer.esperanto_custom.tokenizer", "standard")
+                .putList("index.analysis.analyzer.esperanto_custom.filter", "custom")
+                .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
+                .build();
+        IndexSettings indexProps = IndexSettingsModule.newIndexSettings("test", indexSettings);
+        Settings settings = Settings.builder()
+                .put(Environment.PATH_HOME_SETTING.getKey(), home)
+                .build();
+        indexAnalyzers = createTestAnalysis(indexProps, settings,
+                new ExtraAnalysisEsperantoPlugin(settings)).indexAnalyzers;
+        match("esperanto_custom", "Bönvenas al Víkìpēdio", "Bönvenas al Víkìpēdi");
+    }
+
+    private void assertAnalyzerAvailable(String analyzerName, String analysisResource) throws IOException {
+        assertAnalyzerAvailable(analyzerName, analysisResource, "Bönven al Víkìpēdi");
+    }
+
+    private void assertAnalyzerAvailable(String analyzerName, String analysisResource, String target)
+            throws IOException {
         Settings indexSettings = settings(Version.CURRENT)
-                .loadFromStream("prebuilt.json", this.getClass().getResourceAsStream("prebuilt.json"), false)
+                .loadFromStream(analysisResource, this.getClass().getResourceAsStream(analysisResource), false)
                 .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
                 .build();
         IndexSettings indexProps = IndexSettingsModule.newIndexSettings("test", indexSettings);
         Settings settings = Settings.builder()
                 .put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
                 .build();
-        indexAnalyzers = createTestAnalysis(indexProps, settings, new ExtraAnalysisEsperantoPlugin()).indexAnalyzers;
-        match("esperanto_prebuilt", "Bönvenon al Víkìpēdio", "Bönven al Víkìpēdi");
+        indexAnalyzers = createTestAnalysis(indexProps, settings,
+                new ExtraAnalysisEsperantoPlugin(settings)).indexAnalyzers;
+        match(analyzerName, "Bönvenon al Víkìpēdio", target);
     }
 
     private void match(String analyzerName, String source, String target) throws IOException {
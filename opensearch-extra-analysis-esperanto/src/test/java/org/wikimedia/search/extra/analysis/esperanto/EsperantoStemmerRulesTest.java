@@ -0,0 +1,97 @@
+package org.wikimedia.search.extra.analysis.esperanto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.junit.Test;
+
+public class EsperantoStemmerRulesTest {
+
+    private static EsperantoStemmerRules parse(String text) throws IOException {
+        return EsperantoStemmerRules.parse(new BufferedReader(new StringReader(text)), "test");
+    }
+
+    @Test
+    public void testCompiledRulesMatchRuleFile() throws IOException {
+        EsperantoStemmerRules parsed = EsperantoStemmerRules.parse(Paths.get("src/main/rules/esperanto_rules.txt"));
+        ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        parsed.write(out);
+        EsperantoStemmerRules read = EsperantoStemmerRules.read(out.toDataInput());
+
+        // the defaults come from the compiled resource
+        EsperantoStemmer[] stemmers = {
+            new EsperantoStemmer(parsed),
+            new EsperantoStemmer(read),
+            new EsperantoStemmer()
+        };
+        String[] starts = {"", "", "la", "mi", "ĉi", "dek", "cent", "mil", "naŭ", "vi", "1960", "x-", "ŝ"};
+        String[] roots = {"", "bonven", "hom", "tri", "du", "kiu", "i", "li", "-", "uj", "skrib", "kap", "ii"};
+        String[] endings = {"", "o", "a", "e", "oj", "ojn", "on", "an", "aj", "is", "intas", "otus", "ite", "-o",
+            "j", "n", "jn", "u", "ĝu"};
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String word = starts[random.nextInt(starts.length)] + roots[random.nextInt(roots.length)]
+                    + endings[random.nextInt(endings.length)];
+            String stem = stemmers[0].stemWord(word);
+            for (EsperantoStemmer stemmer : stemmers) {
+                assertThat(stemmer.stemWord(word)).as(word).isEqualTo(stem);
+            }
+        }
+        for (String exception : new String[] {"la", "dirlididi", "dekdu", "kvin"}) {
+            for (EsperantoStemmer stemmer : stemmers) {
+                assertThat(stemmer.stemWord(exception)).isEqualTo(exception);
+            }
+        }
+    }
+
+    @Test
+    public void testCustomRules() throws IOException {
+        EsperantoStemmerRules rules = parse("version 1\n"
+                + "[suffixes]\n"
+                + "o\n"
+                + "ado\n"
+                + "st\n"
+                + "[exceptions]\n"
+                + "hundo\n"
+                + "[plural_direct_checks]\n"
+                + "ŝli\n"
+                + "[numerals]\n"
+                + "kvar\n");
+        EsperantoStemmer stemmer = new EsperantoStemmer(rules);
+        assertThat(stemmer.stemWord("hundo")).isEqualTo("hundo");
+        assertThat(stemmer.stemWord("hundoj")).isEqualTo("hundo");
+        assertThat(stemmer.stemWord("kato")).isEqualTo("kat");
+        assertThat(stemmer.stemWord("parolado")).isEqualTo("parol");
+        // the longest suffix that leaves the first vowel in the stem
+        assertThat(stemmer.stemWord("bado")).isEqualTo("bad");
+        assertThat(stemmer.stemWord("paroladojn")).isEqualTo("parol");
+        assertThat(stemmer.stemWord("bela")).isEqualTo("bela");
+        assertThat(stemmer.stemWord("ŝlin")).isEqualTo("ŝli");
+        assertThat(stemmer.stemWord("dekkvar")).isEqualTo("dekkvar");
+        assertThat(stemmer.stemWord("dektri")).isEqualTo("dektri");
+        assertThat(stemmer.stemWord("dektrio")).isEqualTo("dektri");
+        // a suffix without a vowel is removed from words without one
+        assertThat(stemmer.stemWord("kkst")).isEqualTo("kk");
+        // the shipped rules are unaffected
+        assertThat(new EsperantoStemmer().stemWord("hundo")).isEqualTo("hund");
+        assertThat(new EsperantoStemmer().stemWord("bela")).isEqualTo("bel");
+    }
+
+    @Test
+    public void testMalformedRules() {
+        assertThatThrownBy(() -> parse("version 2\n[suffixes]\n[exceptions]\n[plural_direct_checks]\n[numerals]\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse(
+                "version 1\n[suffixes]\no\ta\n[exceptions]\n[plural_direct_checks]\n[numerals]\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse("version 1\n[suffixes]\n[prefixes]\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -2,6 +2,8 @@ package org.wikimedia.search.extra.analysis.esperanto;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class EsperantoStemmerTest {
@@ -210,6 +212,26 @@ public class EsperantoStemmerTest {
         stemCheck("stelodekdulatero", "stelodekdulater"); // 12-sided polygon
     }
 
+    @Test
+    public void testCardinals() {
+        // every cardinal up to 1999 is left alone, and its ordinal is stemmed back to it
+        String[] digits = {"", "unu", "du", "tri", "kvar", "kvin", "ses", "sep", "ok", "naŭ"};
+        for (int n = 1; n < 2000; n++) {
+            StringBuilder cardinal = new StringBuilder();
+            String[] bigNumWords = {"mil", "cent", "dek", ""};
+            int[] places = {n / 1000, n / 100 % 10, n / 10 % 10, n % 10};
+            for (int i = 0; i < places.length; i++) {
+                if (places[i] == 0) continue;
+                if (places[i] > 1 || bigNumWords[i].isEmpty()) cardinal.append(digits[places[i]]);
+                cardinal.append(bigNumWords[i]);
+            }
+            stemCheck(cardinal.toString(), cardinal.toString());
+            stemCheck(cardinal + "a", cardinal.toString());
+        }
+        // only the end of the word has to look like a number
+        stemUnchangedCheck(new String[]{"kvazaŭdekdu", "x-centsep"});
+    }
+
     @Test
     public void testInflectedNames() {
         stemCheck("stephan-a", "stephan");
@@ -268,4 +290,76 @@ public class EsperantoStemmerTest {
         stemCheck("wïkïpêdïyäa", "wïkïpêdïyäa");    // Sango
     }
 
+    @Test
+    public void testXSystem() {
+        EsperantoStemmer normalizing = new EsperantoStemmer(EsperantoStemmerRules.defaults(), true, false);
+        String[][] words = {
+            // X-system, either case, and combining supersigns
+            {"cxambrojn", "ĉambrojn"}, {"gxardeno", "ĝardeno"}, {"hxoro", "ĥoro"}, {"jxaudon", "ĵaudon"},
+            {"sxipoj", "ŝipoj"}, {"auxto", "aŭto"}, {"CXAMBRO", "ĈAMBRO"}, {"Sxipo", "Ŝipo"}, {"ux", "ŭ"},
+            {"c\u0302ambro", "ĉambro"}, {"au\u0306to", "aŭto"},
+            // exceptions and numerals are found
+            {"nauxdek", "naŭdek"}, {"cxiujn", "ĉiujn"}, {"cxu", "ĉu"}, {"milnauxcentokdekkvar", "milnaŭcentokdekkvar"},
+            // only after the letters that take that supersign
+            {"taxio", "taxio"}, {"u\u0302o", "u\u0302o"}, {"c\u0306o", "c\u0306o"}, {"x", "x"},
+            // the H-system is left alone
+            {"chambro", "chambro"},
+        };
+        for (String[] word : words) {
+            assertThat(normalizing.stemWord(word[0])).as(word[0]).isEqualTo(stemmer.stemWord(word[1]));
+        }
+        assertThat(normalizing.stemWord("nauxdek")).isEqualTo("naŭdek");
+        assertThat(normalizing.stemWord("cxambrojn")).isEqualTo("ĉambr");
+        // the default is to leave them alone
+        assertThat(stemmer.stemWord("nauxdek")).isEqualTo("nauxdek");
+    }
+
+    @Test
+    public void testHSystem() {
+        EsperantoStemmer normalizing = new EsperantoStemmer(EsperantoStemmerRules.defaults(), false, true);
+        String[][] words = {
+            {"chambrojn", "ĉambrojn"}, {"ghardeno", "ĝardeno"}, {"hhoro", "ĥoro"}, {"jhaudon", "ĵaudon"},
+            {"Shipo", "Ŝipo"}, {"CHIUJN", "ĈIUJN"}, {"chu", "ĉu"},
+            // ŭ is written as a plain u, and the X-system is left alone
+            {"auhto", "auhto"}, {"cxambro", "cxambro"},
+        };
+        for (String[] word : words) {
+            assertThat(normalizing.stemWord(word[0])).as(word[0]).isEqualTo(stemmer.stemWord(word[1]));
+        }
+        // which is ambiguous: flug-haveno
+        assertThat(normalizing.stemWord("flughaveno")).isEqualTo("fluĝaven");
+        EsperantoStemmer both = new EsperantoStemmer(EsperantoStemmerRules.defaults(), true, true);
+        assertThat(both.stemWord("cxambro")).isEqualTo("ĉambr");
+        assertThat(both.stemWord("chambro")).isEqualTo("ĉambr");
+    }
+
+    @Test
+    public void testStemInPlace() {
+        String[] words = {"muzikontojn", "1960ajn", "ĉiujn", "-oj", "post-kant-ajn", "milnaŭcentokdekkvar", ""};
+        for (String word : words) {
+            // garbage after the word must be ignored
+            char[] buffer = (word + "ojn").toCharArray();
+            int length = stemmer.stem(buffer, word.length());
+            assertThat(new String(buffer, 0, length)).isEqualTo(stemmer.stemWord(word));
+            // the buffer is left untouched
+            assertThat(new String(buffer)).isEqualTo(word + "ojn");
+        }
+    }
+
+
+    @Test
+    public void testStemWords() {
+        String[] vocabulary = {"tuŝojn", "pufaj", "la", "dekdu", "1960aj", "vikipedio", "-o", ""};
+        Random random = new Random(42);
+        String[] words = new String[50_000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = vocabulary[random.nextInt(vocabulary.length)];
+        }
+        words[123] = null;
+        String[] stems = new String[words.length];
+        stemmer.stemWords(words, stems);
+        for (int i = 0; i < words.length; i++) {
+            assertThat(stems[i]).isEqualTo(stemmer.stemWord(words[i]));
+        }
+    }
 }
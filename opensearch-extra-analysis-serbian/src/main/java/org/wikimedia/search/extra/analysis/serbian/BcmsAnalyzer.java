@@ -0,0 +1,44 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+
+/**
+ * The prebuilt {@code bcms} analyzer: the standard tokenizer, then a
+ * {@link SerbianStemmerTokenFilter} that lowercases each term in the same scan that prepares it
+ * for the stemmer, instead of a separate lowercase filter. Its components are shared by all
+ * fields, so each thread has a single instance.
+ *
+ * <p>It isn't called {@code serbian}, as OpenSearch has a {@code serbian} analyzer of its own.
+ */
+public final class BcmsAnalyzer extends Analyzer {
+
+    private final StemCache cache;
+    private final FilterStats stats;
+
+    /**
+     * @param cache node-wide stem cache, or null for none
+     * @param stats the counters to add the filter's counts to, or null for none
+     */
+    public BcmsAnalyzer(StemCache cache, FilterStats stats) {
+        super(GLOBAL_REUSE_STRATEGY);
+        this.cache = cache;
+        this.stats = stats;
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        Tokenizer tokenizer = new StandardTokenizer();
+        return new TokenStreamComponents(tokenizer, new SerbianStemmerTokenFilter(tokenizer, cache, stats));
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new LowerCaseFilter(in);
+    }
+}
@@ -1,18 +1,13 @@
 package org.wikimedia.search.extra.analysis.serbian;
 
-import static java.util.Collections.unmodifiableList;
-import static java.util.Collections.unmodifiableMap;
-import static java.util.Collections.unmodifiableSet;
-
-import java.util.ArrayList;
+import java.text.Normalizer;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+
+import org.wikimedia.search.extra.analysis.common.BatchStemmer;
+import org.wikimedia.search.extra.analysis.common.CharClassifier;
+import org.wikimedia.search.extra.analysis.common.InPlaceStemmer;
 
 /**
  * This file was forked from this repo under a GPLv3 license:
@@ -44,64 +39,97 @@ import java.util.regex.Pattern;
  *     2688-2696, Portorož, Slovenia (2016). <br>
  *     https://github.com/vukbatanovic/SCStemmers <br>
  */
-public class LjubesicPandzicStemmer {
-
-    private static class Transformations {
-        protected final Map<String, String> map;
-        protected final int minLen;
-        protected final int maxLen;
-
-        Transformations(Map<String, String> transformations) {
-            this.map = transformations;
-            int min = Integer.MAX_VALUE;
-            int max = 0;
-            for (String key : map.keySet()) {
-                int len = key.length();
-                if (len < min) min = len;
-                if (len > max) max = len;
-            }
-            minLen = min;
-            maxLen = max;
-        }
-    }
+public class LjubesicPandzicStemmer implements InPlaceStemmer {
+
+    /** Stop words, suffix transformations and word rules. */
+    private final SerbianStemmerRules rules;
 
     /**
-     * Mapa sufiksnih transformacija.
-     *
-     * <p><i>The map of suffix transformations.</i>
+     * Whether a word with no vowel is its own stem: no valid stem can be cut from it, and none
+     * of the suffix transformations applies, as long as they all need a vowel.
      */
-    private static final Transformations TRANSFORMATIONS =
-            new Transformations(unmodifiableMap(initTransformations()));
+    private final boolean vowellessWordsAreStems;
+
+    /** Whether to strip pitch accents from words before stemming them. */
+    private final boolean stripAccents;
+
+    /** Stems returned by the word rules must contain a vowel and be longer than one char. */
+    private static final WordRuleAutomaton.StemCondition VALID_STEM =
+            (buffer, length) -> length > 1 && hasAVowel(buffer, length);
+
+    /** The chars that {@link #hasAVowel(char[], int)} looks for. */
+    private static final String VOWELS = "aeiourR";
+
+    /** First char of the Serbian Cyrillic block (Ѐ-џ) covered by the transliteration table. */
+    private static final char CYR_2_LAT_BASE = '\u0400';
 
     /**
-     * Lista stop-reči. Korišćena je implementacija u vidu hashseta radi brzine.
-     *
-     * <p><i>The list of stop-words. A hashset implementation was used for the sake of efficiency.</i>
+     * Mapping from Cyrillic to Latin characters, indexed by {@code ch - CYR_2_LAT_BASE}. Each entry
+     * is the Latin char (0 if the Cyrillic char is not Serbian) and, for the digraphs љ, њ and џ,
+     * the second Latin char (0 otherwise).
      */
-    private static final Set<String> STOPSET = unmodifiableSet(initStopSet());
+    private static final char[] CYR_2_LAT_FIRST = new char[0x60];
+    private static final char[] CYR_2_LAT_SECOND = new char[0x60];
+
+    static {
+        for (Map.Entry<Character, String> entry : initCyr2LatMap().entrySet()) {
+            int index = entry.getKey() - CYR_2_LAT_BASE;
+            String latin = entry.getValue();
+            CYR_2_LAT_FIRST[index] = latin.charAt(0);
+            CYR_2_LAT_SECOND[index] = latin.length() > 1 ? latin.charAt(1) : 0;
+        }
+    }
+
+    /** Chars that {@link #convertCyrillicToLatin(char[], int)} converts. */
+    private static final int CYRILLIC = 1;
+    /** Chars that are, or are converted to, one of the {@link #VOWELS}. */
+    private static final int VOWEL = 2;
+    /** Chars that are converted to two chars (љ, њ, џ). */
+    private static final int DIGRAPH = 4;
+    /** Chars with a pitch accent, and the combining accents themselves. */
+    private static final int ACCENT = 8;
+
+    /** Combining grave, acute, macron, double grave and inverted breve, used to mark pitch accent. */
+    private static final String COMBINING_ACCENTS = "\u0300\u0301\u0304\u030F\u0311";
+    private static final char COMBINING_ACUTE = '\u0301';
+    /** The letters that can have a pitch accent: vowels and syllabic r. */
+    private static final String ACCENTED_LETTERS = "aeiouAEIOUrR";
+    /** All precomposed letters with a pitch accent are below U+0500. */
+    private static final int ACCENTED_LIMIT = 0x500;
 
     /**
-     * Lista morfoloških obrazaca reči.
-     *
-     * <p><i>The list of morphological patterns of words.</i>
+     * The plain Latin letter for each precomposed vowel or r with a pitch accent, in either
+     * script, indexed by char (0 for other chars), e.g. a for ȁ and e for ѐ.
      */
-    private static final List<Pattern> WORD_PATTERNS = unmodifiableList(initWordPatterns());
+    private static final char[] UNACCENTED = initUnaccented();
+
+    private static final CharClassifier CLASSIFIER = initClassifier();
 
     /**
-     * Skup samoglasnika.
-     *
-     * <p><i>The set of vowels.</i>
+     * A stemmer with the rules shipped with the plugin.
      */
-    private static final Pattern VOWEL_PATTERN = Pattern.compile("[aeiouR]");
-
-    /** Pattern for matching Syllabic R. */
-    private static final Pattern SYLLABIC_R_PATTERN = Pattern.compile("(^|[^aeiou])r($|[^aeiou])");
+    public LjubesicPandzicStemmer() {
+        this(SerbianStemmerRules.defaults());
+    }
 
-    /** String transformations should be localized to Serbian. */
-    private static final Locale SR_LOCALE = new Locale("sr");
+    /**
+     * A stemmer with other rules, e.g., from a filter's {@code rules_path}.
+     */
+    public LjubesicPandzicStemmer(SerbianStemmerRules rules) {
+        this(rules, false);
+    }
 
-    /** Mapping from Latin to Cyrillic characters. */
-    private static final Map<Character, String> CYR_2_LAT_MAP = unmodifiableMap(initCyr2LatMap());
+    /**
+     * A stemmer that can also strip the pitch accents (acute, grave, double grave, macron and
+     * inverted breve) that dictionaries mark on vowels and syllabic r, precomposed or combining,
+     * in both scripts. This is done in the same pass as the conversion to Latin, and leaves č,
+     * ć, đ, š and ž alone.
+     */
+    public LjubesicPandzicStemmer(SerbianStemmerRules rules, boolean stripAccents) {
+        this.rules = rules;
+        this.vowellessWordsAreStems = rules.transformations.everySuffixContainsAnyOf(VOWELS);
+        this.stripAccents = stripAccents;
+    }
 
     /**
      * Ako se naiđe na neku od stop-reči, ona se preskače. U suprotnom, sufiks reči se najpre
@@ -116,58 +144,93 @@ public class LjubesicPandzicStemmer {
      *     <i> The stemmed word</i>
      */
     public String stemWord(String word) {
-        word = convertCyrrilicToLatinString(word);
-        if (STOPSET.contains(word.toLowerCase(SR_LOCALE))) return word;
-        String stemmed = transform(word);
-        for (Pattern pattern : WORD_PATTERNS) {
-            Matcher matcher = pattern.matcher(stemmed);
-            if (matcher.matches()) {
-                String wordStem = matcher.group(1);
-                if (hasAVowel(wordStem) && wordStem.length() > 1) return wordStem;
-            }
-        }
-        return stemmed;
+        char[] buffer = new char[bufferLength(word.length())];
+        word.getChars(0, word.length(), buffer, 0);
+        return new String(buffer, 0, stem(buffer, word.length()));
     }
 
     /**
-     * Zamenjuje sufiks reči transformisanom varijantom tog sufiksa.
+     * Stem a batch of words, e.g., in an offline job. Each distinct word is stemmed once, and
+     * large batches are split across the common {@link ForkJoinPool}; see {@link BatchStemmer}.
      *
-     * <p><i>Replaces the word suffix with a transformed variant of that suffix.</i>
+     * @param words the words to stem; null words get null stems
+     * @param stems where to write the stem of each word, at the same index
+     */
+    public void stemWords(String[] words, String[] stems) {
+        BatchStemmer.stemAll(this, words, stems);
+    }
+
+    /**
+     * Stem a batch of words on the given pool, like {@link #stemWords(String[], String[])}.
+     */
+    public void stemWords(String[] words, String[] stems, ForkJoinPool pool) {
+        BatchStemmer.stemAll(this, words, stems, pool);
+    }
+
+    /**
+     * Stem a word in place. This does the same as {@link #stemWord(String)}, but works directly on
+     * the given buffer (e.g., the buffer of a CharTermAttribute), so that no intermediate strings
+     * are created.
      *
-     * @param word Reč koju treba obraditi <br>
-     *     <i>The word that should be processed</i>
-     * @return Transformisana reč <br>
-     *     <i> The transformed word</i>
+     * @param buffer the word to stem, followed by enough room for the stemmed word; it must be at
+     *     least {@link #bufferLength(int) bufferLength(length)} chars long
+     * @param length the length of the word
+     * @return the length of the stemmed word, now at the start of the buffer
      */
-    private String transform(String word) {
-        int wordLength = word.length();
-        if (wordLength < TRANSFORMATIONS.minLen) {
-            // word is too short to have a suffix to transform
-            return word;
-        }
-        // process suffixes longest to shortest to get most relevant match
-        for (int i = Math.min(wordLength, TRANSFORMATIONS.maxLen); i >= TRANSFORMATIONS.minLen; i--) {
-            String wordEnding = word.substring(wordLength - i);
-            String replacement = TRANSFORMATIONS.map.get(wordEnding);
-            if (replacement != null) {
-                return word.substring(0, wordLength - i) + replacement;
-            }
-        }
-        return word;
+    @Override
+    public int stem(char[] buffer, int length) {
+        // a single scan tells which steps can apply; most words are Latin, and numbers and
+        // words in other scripts have no vowel
+        return stem(buffer, length, CLASSIFIER.classify(buffer, length));
+    }
+
+    /* Lowercase a word in place, returning the classes of its chars for stem(char[], int, int),
+     * so that they are found in the same scan.
+     */
+    static int lowercase(char[] buffer, int length) {
+        return CLASSIFIER.lowercaseAndClassify(buffer, length);
+    }
+
+    /* Stem a word in place, given the classes of its chars. */
+    int stem(char[] buffer, int length, int classes) {
+        assert buffer.length >= bufferLength(length);
+        length = toLatin(buffer, length, classes);
+        if ((classes & VOWEL) == 0 && vowellessWordsAreStems) return length;
+        if (rules.stopSet.contains(buffer, 0, length)) return length;
+        length = transform(buffer, length);
+        int stemLength = rules.wordRules.stemLength(buffer, length, VALID_STEM);
+        if (stemLength >= 0) return stemLength;
+        return length;
     }
 
     /**
-     * Kapitalizuje slogotvorno R u zadatoj reči, ako postoji.
+     * The buffer size needed to stem a word in place with {@link #stem(char[], int)}. Converting
+     * Cyrillic to Latin can turn one char into two (љ, њ, џ), and a suffix transformation can make
+     * the word longer still.
      *
-     * <p><i>Capitalizes the syllabic R in the given word, if it exists.</i>
+     * @param length the length of the word
+     * @return the minimum length of the buffer
+     */
+    @Override
+    public int bufferLength(int length) {
+        return 2 * length + rules.transformations.maxGrowth;
+    }
+
+    /**
+     * Zamenjuje sufiks reči transformisanom varijantom tog sufiksa.
      *
-     * @param word Reč koju treba obraditi <br>
+     * <p><i>Replaces the word suffix with a transformed variant of that suffix.</i>
+     *
+     * @param buffer Reč koju treba obraditi <br>
      *     <i>The word that should be processed</i>
-     * @return Reč sa kapitalizovanim slogotvornim R <br>
-     *     <i>The word with the syllabic R capitalized</i>
+     * @param length Dužina reči <br>
+     *     <i>The length of the word</i>
+     * @return Dužina transformisane reči <br>
+     *     <i> The length of the transformed word</i>
      */
-    private String capitalizeSyllabicR(String word) {
-        return SYLLABIC_R_PATTERN.matcher(word).replaceAll("$1R$2");
+    private int transform(char[] buffer, int length) {
+        // the longest matching suffix is the most relevant match
+        return rules.transformations.apply(buffer, length);
     }
 
     /**
@@ -175,115 +238,170 @@ public class LjubesicPandzicStemmer {
      *
      * <p><i>Checks whether the word contains a vowel/syllabic R.</i>
      *
-     * @param word Reč koju treba obraditi <br>
+     * <p>An r is syllabic when it is not next to a vowel, but any vowel is enough on its own, so
+     * an r only matters in a word with no vowels, where it can't be next to one. A single
+     * scan for [aeiourR] therefore gives the same answer as capitalizing the syllabic R and then
+     * looking for [aeiouR]. (An R that is already uppercase counts, too, as it always has.)
+     *
+     * @param buffer Reč koju treba obraditi <br>
      *     <i>The word that should be processed</i>
+     * @param length Dužina reči <br>
+     *     <i>The length of the word</i>
      * @return True ako reč sadrži samoglasnik/slogotvorno R, false u suprotnom <br>
      *     <i>True if the word contains a vowel/syllabic R, false otherwise</i>
      */
-    private boolean hasAVowel(String word) {
-        Matcher matcher = VOWEL_PATTERN.matcher(capitalizeSyllabicR(word));
-        return matcher.find();
+    static boolean hasAVowel(char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            switch (buffer[i]) {
+                case 'a':
+                case 'e':
+                case 'i':
+                case 'o':
+                case 'u':
+                case 'r':
+                case 'R':
+                    return true;
+                default:
+                    break;
+            }
+        }
+        return false;
     }
 
-    /* Convert a string from Cyrillic to Latin.
+    /* Convert a word to Latin in place, and strip its accents if this stemmer does, as it is
+     * done before stemming. The buffer must have room for twice the word.
      */
-    private String convertCyrrilicToLatinString(String word) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < word.length(); i++) {
-            char ch = word.charAt(i);
-            sb.append(convertCyrillicToLatinCharacter(ch));
-        }
-        return sb.toString();
+    int toLatin(char[] buffer, int length) {
+        return toLatin(buffer, length, CLASSIFIER.classify(buffer, length));
+    }
+
+    private int toLatin(char[] buffer, int length, int classes) {
+        if (stripAccents && (classes & ACCENT) != 0) return stripAccentsAndConvert(buffer, length);
+        if ((classes & DIGRAPH) != 0) return convertCyrillicToLatin(buffer, length);
+        if ((classes & CYRILLIC) != 0) convertCyrillicToLatinSameLength(buffer, length);
+        return length;
+    }
+
+    /* The classes of the chars of a word, for stem(char[], int, int). */
+    static int classify(char[] buffer, int length) {
+        return CLASSIFIER.classify(buffer, length);
+    }
+
+    /* Whether stem(char[], int, int) converts a word with these classes from Cyrillic. */
+    static boolean convertsCyrillic(int classes) {
+        return (classes & CYRILLIC) != 0;
     }
 
-    /* Convert a single Cyrillic character to Latin character or digraph.
+    /* Convert a word from Cyrillic to Latin in place, returning the new length. Most words are
+     * already in Latin and are left alone after a single scan. Digraphs make the word longer, so
+     * if there are any, the word is filled in from the end once the new length is known.
      */
-    private String convertCyrillicToLatinCharacter(char character) {
-        String latinChar = CYR_2_LAT_MAP.get(character);
-        if (latinChar != null) return latinChar;
+    static int convertCyrillicToLatin(char[] buffer, int length) {
+        int firstCyrillic = -1;
+        int digraphs = 0;
+        for (int i = 0; i < length; i++) {
+            int index = buffer[i] - CYR_2_LAT_BASE;
+            if (index >= 0 && index < CYR_2_LAT_FIRST.length && CYR_2_LAT_FIRST[index] != 0) {
+                if (firstCyrillic < 0) firstCyrillic = i;
+                if (CYR_2_LAT_SECOND[index] != 0) digraphs++;
+            }
+        }
+        if (firstCyrillic < 0) {
+            return length;
+        }
+
+        int newLength = length + digraphs;
+        for (int i = length - 1, j = newLength; i >= firstCyrillic; i--) {
+            char ch = buffer[i];
+            int index = ch - CYR_2_LAT_BASE;
+            if (index < 0 || index >= CYR_2_LAT_FIRST.length || CYR_2_LAT_FIRST[index] == 0) {
+                buffer[--j] = ch;
+            } else {
+                if (CYR_2_LAT_SECOND[index] != 0) buffer[--j] = CYR_2_LAT_SECOND[index];
+                buffer[--j] = CYR_2_LAT_FIRST[index];
+            }
+        }
+        return newLength;
+    }
 
-        return Character.toString(character);
+    /* Strip accents and convert single Cyrillic letters to Latin in one forward pass, which
+     * can only make the word shorter. Digraphs make it longer, so they are converted afterwards.
+     */
+    private static int stripAccentsAndConvert(char[] buffer, int length) {
+        int newLength = 0;
+        boolean digraphs = false;
+        for (int i = 0; i < length; i++) {
+            char ch = buffer[i];
+            if (ch < UNACCENTED.length && UNACCENTED[ch] != 0) {
+                ch = UNACCENTED[ch];
+            } else if (COMBINING_ACCENTS.indexOf(ch) >= 0) {
+                // c with a combining acute is ć, not an accented c
+                boolean afterC = newLength > 0 && (buffer[newLength - 1] == 'c' || buffer[newLength - 1] == 'C');
+                if (ch != COMBINING_ACUTE || !afterC) continue;
+            } else {
+                int index = ch - CYR_2_LAT_BASE;
+                if (index >= 0 && index < CYR_2_LAT_FIRST.length && CYR_2_LAT_FIRST[index] != 0) {
+                    if (CYR_2_LAT_SECOND[index] == 0) {
+                        ch = CYR_2_LAT_FIRST[index];
+                    } else {
+                        digraphs = true;
+                    }
+                }
+            }
+            buffer[newLength++] = ch;
+        }
+        return digraphs ? convertCyrillicToLatin(buffer, newLength) : newLength;
     }
 
-    /* Initialize the set of "stop" words, which are uninflected, but still returned.
+    /* Find the precomposed vowels and r with a pitch accent, in Latin and in Serbian Cyrillic,
+     * from their canonical decompositions.
      */
-    private static Set<String> initStopSet() {
-        // STOPSET
-        Set<String> stops = new HashSet<>();
-        stops.add("biti");
-        stops.add("jesam");
-        stops.add("budem");
-        stops.add("sam");
-        stops.add("jesi");
-        stops.add("budeš");
-        stops.add("si");
-        stops.add("jesmo");
-        stops.add("budemo");
-        stops.add("smo");
-        stops.add("jeste");
-        stops.add("budete");
-        stops.add("ste");
-        stops.add("jesu");
-        stops.add("budu");
-        stops.add("su");
-        stops.add("bih");
-        stops.add("bijah");
-        stops.add("bjeh");
-        stops.add("bijaše");
-        stops.add("bi");
-        stops.add("bje");
-        stops.add("bješe");
-        stops.add("bijasmo");
-        stops.add("bismo");
-        stops.add("bjesmo");
-        stops.add("bijaste");
-        stops.add("biste");
-        stops.add("bjeste");
-        stops.add("bijahu");
-        //    stops.add("biste");    // Batanović: Ponavljanja
-        //    stops.add("bjeste");    //          Repetitions
-        //    stops.add("bijahu");
-        //    stops.add("bi");
-        stops.add("biše");
-        stops.add("bjehu");
-        //    stops.add("bješe");
-        stops.add("bio");
-        stops.add("bili");
-        stops.add("budimo");
-        stops.add("budite");
-        stops.add("bila");
-        stops.add("bilo");
-        stops.add("bile");
-        stops.add("ću");
-        stops.add("ćeš");
-        stops.add("će");
-        stops.add("ćemo");
-        stops.add("ćete");
-        stops.add("želim");
-        stops.add("želiš");
-        stops.add("želi");
-        stops.add("želimo");
-        stops.add("želite");
-        stops.add("žele");
-        stops.add("moram");
-        stops.add("moraš");
-        stops.add("mora");
-        stops.add("moramo");
-        stops.add("morate");
-        stops.add("moraju");
-        stops.add("trebam");
-        stops.add("trebaš");
-        stops.add("treba");
-        stops.add("trebamo");
-        stops.add("trebate");
-        stops.add("trebaju");
-        stops.add("mogu");
-        stops.add("možeš");
-        stops.add("može");
-        stops.add("možemo");
-        stops.add("možete");
-
-        return stops;
+    private static char[] initUnaccented() {
+        char[] unaccented = new char[ACCENTED_LIMIT];
+        for (char ch = 0; ch < unaccented.length; ch++) {
+            String decomposed = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
+            if (decomposed.length() != 2 || COMBINING_ACCENTS.indexOf(decomposed.charAt(1)) < 0) continue;
+            char base = decomposed.charAt(0);
+            int index = base - CYR_2_LAT_BASE;
+            if (index >= 0 && index < CYR_2_LAT_FIRST.length) {
+                if (CYR_2_LAT_SECOND[index] != 0) continue;
+                base = CYR_2_LAT_FIRST[index];
+            }
+            if (ACCENTED_LETTERS.indexOf(base) >= 0) unaccented[ch] = base;
+        }
+        return unaccented;
+    }
+
+    /* Classify the Serbian Cyrillic chars, the vowels in either script, and the accents. */
+    private static CharClassifier initClassifier() {
+        CharClassifier.Builder builder = CharClassifier.builder().add(VOWEL, VOWELS).add(ACCENT, COMBINING_ACCENTS);
+        for (char ch = 0; ch < UNACCENTED.length; ch++) {
+            // counted as a vowel even if the accent is kept, which only means the word is stemmed
+            if (UNACCENTED[ch] != 0) builder.add(VOWEL | ACCENT, ch, ch);
+        }
+        for (int index = 0; index < CYR_2_LAT_FIRST.length; index++) {
+            char latin = CYR_2_LAT_FIRST[index];
+            if (latin == 0) continue;
+            char cyrillic = (char) (CYR_2_LAT_BASE + index);
+            int classes = CYRILLIC;
+            if (CYR_2_LAT_SECOND[index] != 0) {
+                classes |= DIGRAPH;
+            } else if (VOWELS.indexOf(latin) >= 0) {
+                classes |= VOWEL;
+            }
+            builder.add(classes, cyrillic, cyrillic);
+        }
+        return builder.build();
+    }
+
+    /* Convert a word with no Cyrillic digraphs from Cyrillic to Latin in place, in one pass. */
+    private static void convertCyrillicToLatinSameLength(char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            int index = buffer[i] - CYR_2_LAT_BASE;
+            if (index >= 0 && index < CYR_2_LAT_FIRST.length && CYR_2_LAT_FIRST[index] != 0) {
+                buffer[i] = CYR_2_LAT_FIRST[index];
+            }
+        }
     }
 
     /* Initialize the Cyrillic to Latin mapping.
@@ -353,342 +471,4 @@ public class LjubesicPandzicStemmer {
 
         return c2l;
     }
-
-    /* Initialize the word ending transformations.
-     */
-    private static Map<String, String> initTransformations() {
-        // TRANSFORMATIONS
-        Map<String, String> transforms = new HashMap<>();
-        transforms.put("lozi", "loga");
-        transforms.put("lozima", "loga");
-        transforms.put("pjesi", "pjeh");
-        transforms.put("pjesima", "pjeh");
-        transforms.put("vojci", "vojka");
-        transforms.put("bojci", "bojka");
-        transforms.put("jaci", "jak");
-        transforms.put("jacima", "jak");
-        transforms.put("čajan", "čajni");
-        transforms.put("ijeran", "ijerni");
-        transforms.put("laran", "larni");
-        transforms.put("ijesan", "ijesni");
-        transforms.put("ajac", "ajca");
-        transforms.put("ajaca", "ajca");
-        transforms.put("ljaca", "ljca");
-        transforms.put("ljac", "ljca");
-        transforms.put("ejac", "ejca");
-        transforms.put("ejaca", "ejca");
-        transforms.put("ojac", "ojca");
-        transforms.put("ojaca", "ojca");
-        transforms.put("ajaka", "ajka");
-        transforms.put("ojaka", "ojka");
-        transforms.put("šaca", "šca");
-        transforms.put("šac", "šca");
-        transforms.put("inzima", "ing");
-        transforms.put("inzi", "ing");
-        transforms.put("tvenici", "tvenik");
-        transforms.put("tetici", "tetika");
-        transforms.put("teticima", "tetika");
-        transforms.put("nstava", "nstva");
-        transforms.put("nicima", "nik");
-        transforms.put("ticima", "tik");
-        transforms.put("zicima", "zik");
-        transforms.put("snici", "snik");
-        transforms.put("kuse", "kusi");
-        transforms.put("kusan", "kusni");
-        transforms.put("kustava", "kustva");
-        transforms.put("dušan", "dušni");
-        transforms.put("antan", "antni");
-        transforms.put("bilan", "bilni");
-        transforms.put("tilan", "tilni");
-        transforms.put("avilan", "avilni");
-        transforms.put("silan", "silni");
-        transforms.put("gilan", "gilni");
-        transforms.put("rilan", "rilni");
-        transforms.put("nilan", "nilni");
-        transforms.put("alan", "alni");
-        transforms.put("ozan", "ozni");
-        transforms.put("rave", "ravi");
-        transforms.put("stavan", "stavni");
-        transforms.put("pravan", "pravni");
-        transforms.put("tivan", "tivni");
-        transforms.put("sivan", "sivni");
-        transforms.put("atan", "atni");
-        transforms.put("cenata", "centa");
-        transforms.put("denata", "denta");
-        transforms.put("genata", "genta");
-        transforms.put("lenata", "lenta");
-        transforms.put("menata", "menta");
-        transforms.put("jenata", "jenta");
-        transforms.put("venata", "venta");
-        transforms.put("tetan", "tetni");
-        transforms.put("pletan", "pletni");
-        transforms.put("šave", "šavi");
-        transforms.put("manata", "manta");
-        transforms.put("tanata", "tanta");
-        transforms.put("lanata", "lanta");
-        transforms.put("sanata", "santa");
-        transforms.put("ačak", "ačka");
-        transforms.put("ačaka", "ačka");
-        transforms.put("ušak", "uška");
-        transforms.put("atak", "atka");
-        transforms.put("ataka", "atka");
-        transforms.put("atci", "atka");
-        transforms.put("atcima", "atka");
-        transforms.put("etak", "etka");
-        transforms.put("etaka", "etka");
-        transforms.put("itak", "itka");
-        transforms.put("itaka", "itka");
-        transforms.put("itci", "itka");
-        transforms.put("otak", "otka");
-        transforms.put("otaka", "otka");
-        transforms.put("utak", "utka");
-        transforms.put("utaka", "utka");
-        transforms.put("utci", "utka");
-        transforms.put("utcima", "utka");
-        transforms.put("eskan", "eskna");
-        transforms.put("tičan", "tični");
-        transforms.put("ojsci", "ojska");
-        transforms.put("esama", "esma");
-        transforms.put("metara", "metra");
-        transforms.put("centar", "centra");
-        transforms.put("centara", "centra");
-        transforms.put("istara", "istra");
-        transforms.put("istar", "istra");
-        transforms.put("ošću", "osti");
-        transforms.put("daba", "dba");
-        transforms.put("čcima", "čka");
-        transforms.put("čci", "čka");
-        transforms.put("mac", "mca");
-        transforms.put("maca", "mca");
-        transforms.put("naca", "nca");
-        transforms.put("nac", "nca");
-        transforms.put("voljan", "voljni");
-        transforms.put("anaka", "anki");
-        transforms.put("vac", "vca");
-        transforms.put("vaca", "vca");
-        transforms.put("saca", "sca");
-        transforms.put("sac", "sca");
-        //    transforms.put("naca", "nca");        // Batanović: Ponavljanja
-        //    transforms.put("nac", "nca");        //               Repetitions
-        transforms.put("raca", "rca");
-        transforms.put("rac", "rca");
-        transforms.put("aoca", "alca");
-        transforms.put("alaca", "alca");
-        transforms.put("alac", "alca");
-        transforms.put("elaca", "elca");
-        transforms.put("elac", "elca");
-        transforms.put("olaca", "olca");
-        transforms.put("olac", "olca");
-        transforms.put("olce", "olca");
-        transforms.put("njac", "njca");
-        transforms.put("njaca", "njca");
-        transforms.put("ekata", "ekta");
-        transforms.put("ekat", "ekta");
-        transforms.put("izam", "izma");
-        transforms.put("izama", "izma");
-        transforms.put("jebe", "jebi");
-        transforms.put("ašan", "ašni");
-
-        return transforms;
-    }
-
-    /* Initialize the whole-word patterns used to strip suffixes.
-     */
-    @SuppressWarnings("checkstyle:linelength")
-    private static List<Pattern> initWordPatterns() {
-        // RULES
-
-        /* Lista početnih delova reči.
-         * The list of word beginnings.
-         */
-        List<String> wordStart = new ArrayList<>();
-
-        /* Lista završetaka reči.
-         * The list of word endings.
-         */
-        List<String> wordEnd = new ArrayList<>();
-
-        wordStart.add(".+(s|š)k");
-        wordEnd.add(
-                "ijima|ijega|ijemu|ijem|ijim|ijih|ijoj|ijeg|iji|ije|ija|oga|ome|omu|ima|og|om|im|ih|oj|i|e|o|a|u");
-        wordStart.add(".+(s|š)tv");
-        wordEnd.add("ima|om|o|a|u");
-        wordStart.add(".+(t|m|p|r|g)anij");
-        wordEnd.add("ama|ima|om|a|u|e|i|");
-        wordStart.add(".+an");
-        wordEnd.add("inom|ina|inu|ine|ima|in|om|u|i|a|e|");
-        wordStart.add(".+in");
-        wordEnd.add("ima|ama|om|a|e|i|u|o|");
-        wordStart.add(".+on");
-        wordEnd.add("ovima|ova|ove|ovi|ima|om|a|e|i|u|");
-        wordStart.add(".+n");
-        wordEnd.add(
-                "ijima|ijega|ijemu|ijeg|ijem|ijim|ijih|ijoj|iji|ije|ija|iju|ima|ome|omu|oga|oj|om|ih|im|og|o|e|a|u|i|");
-        wordStart.add(".+(a|e|u)ć");
-        wordEnd.add("oga|ome|omu|ega|emu|ima|oj|ih|om|eg|em|og|uh|im|e|a");
-        wordStart.add(".+ugov");
-        wordEnd.add("ima|i|e|a");
-        wordStart.add(".+ug");
-        wordEnd.add("ama|om|a|e|i|u|o");
-        wordStart.add(".+log");
-        wordEnd.add("ama|om|a|u|e|");
-        wordStart.add(".+[^eo]g");
-        wordEnd.add("ovima|ama|ovi|ove|ova|om|a|e|i|u|o|");
-        wordStart.add(".+(rrar|ott|ss|ll)i");
-        wordEnd.add("jem|ja|ju|o|");
-        wordStart.add(".+uj");
-        wordEnd.add("ući|emo|ete|mo|em|eš|e|u|");
-        wordStart.add(".+(c|č|ć|đ|l|r)aj");
-        wordEnd.add("evima|evi|eva|eve|ama|ima|em|a|e|i|u|");
-        wordStart.add(".+(b|c|d|l|n|m|ž|g|f|p|r|s|t|z)ij");
-        wordEnd.add("ima|ama|om|a|e|i|u|o|");
-        wordStart.add(".+[^z]nal");
-        wordEnd.add("ima|ama|om|a|e|i|u|o|");
-        wordStart.add(".+ijal");
-        wordEnd.add("ima|ama|om|a|e|i|u|o|");
-        wordStart.add(".+ozil");
-        wordEnd.add("ima|om|a|e|u|i|");
-        wordStart.add(".+olov");
-        wordEnd.add("ima|i|a|e");
-        wordStart.add(".+ol");
-        wordEnd.add("ima|om|a|u|e|i|");
-        wordStart.add(".+lem");
-        wordEnd.add("ama|ima|om|a|e|i|u|o|");
-        wordStart.add(".+ram");
-        wordEnd.add("ama|om|a|e|i|u|o");
-        wordStart.add(".+(a|d|e|o)r");
-        wordEnd.add("ama|ima|om|u|a|e|i|");
-        wordStart.add(".+(e|i)s");
-        wordEnd.add("ima|om|e|a|u");
-        wordStart.add(".+(t|n|j|k|j|t|b|g|v)aš");
-        wordEnd.add("ama|ima|om|em|a|u|i|e|");
-        wordStart.add(".+(e|i)š");
-        wordEnd.add("ima|ama|om|em|i|e|a|u|");
-        wordStart.add(".+ikat");
-        wordEnd.add("ima|om|a|e|i|u|o|");
-        wordStart.add(".+lat");
-        wordEnd.add("ima|om|a|e|i|u|o|");
-        wordStart.add(".+et");
-        wordEnd.add("ama|ima|om|a|e|i|u|o|");
-        wordStart.add(".+(e|i|k|o)st");
-        wordEnd.add("ima|ama|om|a|e|i|u|o|");
-        wordStart.add(".+išt");
-        wordEnd.add("ima|em|a|e|u");
-        wordStart.add(".+ova");
-        wordEnd.add("smo|ste|hu|ti|še|li|la|le|lo|t|h|o");
-        wordStart.add(".+(a|e|i)v");
-        wordEnd.add(
-                "ijemu|ijima|ijega|ijeg|ijem|ijim|ijih|ijoj|oga|ome|omu|ima|ama|iji|ije|ija|iju|im|ih|oj|om|og|i|a|u|e|o|");
-        wordStart.add(".+[^dkml]ov");
-        wordEnd.add(
-                "ijemu|ijima|ijega|ijeg|ijem|ijim|ijih|ijoj|oga|ome|omu|ima|iji|ije|ija|iju|im|ih|oj|om|og|i|a|u|e|o|");
-        wordStart.add(".+(m|l)ov");
-        wordEnd.add("ima|om|a|u|e|i|");
-        wordStart.add(".+el");
-        wordEnd.add(
-                "ijemu|ijima|ijega|ijeg|ijem|ijim|ijih|ijoj|oga|ome|omu|ima|iji|ije|ija|iju|im|ih|oj|om|og|i|a|u|e|o|");
-        wordStart.add(".+(a|e|š)nj");
-        wordEnd.add(
-                "ijemu|ijima|ijega|ijeg|ijem|ijim|ijih|ijoj|oga|ome|omu|ima|iji|ije|ija|iju|ega|emu|eg|em|im|ih|oj|om|og|a|e|i|o|u");
-        wordStart.add(".+čin");
-        wordEnd.add("ama|ome|omu|oga|ima|og|om|im|ih|oj|a|u|i|o|e|");
-        wordStart.add(".+roši");
-        wordEnd.add("vši|smo|ste|še|mo|te|ti|li|la|lo|le|m|š|t|h|o");
-        wordStart.add(".+oš");
-        wordEnd.add(
-                "ijemu|ijima|ijega|ijeg|ijem|ijim|ijih|ijoj|oga|ome|omu|ima|iji|ije|ija|iju|im|ih|oj|om|og|i|a|u|e|");
-        wordStart.add(".+(e|o)vit");
-        wordEnd.add(
-                "ijima|ijega|ijemu|ijem|ijim|ijih|ijoj|ijeg|iji|ije|ija|oga|ome|omu|ima|og|om|im|ih|oj|i|e|o|a|u|");
-        wordStart.add(".+ast");
-        wordEnd.add(
-                "ijima|ijega|ijemu|ijem|ijim|ijih|ijoj|ijeg|iji|ije|ija|oga|ome|omu|ima|og|om|im|ih|oj|i|e|o|a|u|");
-        wordStart.add(".+k");
-        wordEnd.add(
-                "ijemu|ijima|ijega|ijeg|ijem|ijim|ijih|ijoj|oga|ome|omu|ima|iji|ije|ija|iju|im|ih|oj|om|og|i|a|u|e|o|");
-        wordStart.add(".+(e|a|i|u)va");
-        wordEnd.add("jući|smo|ste|jmo|jte|ju|la|le|li|lo|mo|na|ne|ni|no|te|ti|še|hu|h|j|m|n|o|t|v|š|");
-        wordStart.add(".+ir");
-        wordEnd.add(
-                "ujemo|ujete|ujući|ajući|ivat|ujem|uješ|ujmo|ujte|avši|asmo|aste|ati|amo|ate|aju|aše|ahu|ala|alo|ali|ale|uje|uju|uj|al|an|am|aš|at|ah|ao");
-        wordStart.add(".+ač");
-        wordEnd.add(
-                "ismo|iste|iti|imo|ite|iše|eći|ila|ilo|ili|ile|ena|eno|eni|ene|io|im|iš|it|ih|en|i|e");
-        wordStart.add(".+ača");
-        wordEnd.add("vši|smo|ste|smo|ste|hu|ti|mo|te|še|la|lo|li|le|ju|na|no|ni|ne|o|m|š|t|h|n");
-        wordStart.add(".+n");
-        wordEnd.add("uvši|usmo|uste|ući|imo|ite|emo|ete|ula|ulo|ule|uli|uto|uti|uta|em|eš|uo|ut|e|u|i");
-        wordStart.add(".+ni");
-        wordEnd.add("vši|smo|ste|ti|mo|te|mo|te|la|lo|le|li|m|š|o");
-        wordStart.add(
-                ".+((a|r|i|p|e|u)st|[^o]g|ik|uc|oj|aj|lj|ak|ck|čk|šk|uk|nj|im|ar|at|et|št|it|ot|ut|zn|zv)a");
-        wordEnd.add(
-                "jući|vši|smo|ste|jmo|jte|jem|mo|te|je|ju|ti|še|hu|la|li|le|lo|na|no|ni|ne|t|h|o|j|n|m|š");
-        wordStart.add(".+ur");
-        wordEnd.add(
-                "ajući|asmo|aste|ajmo|ajte|amo|ate|aju|ati|aše|ahu|ala|ali|ale|alo|ana|ano|ani|ane|al|at|ah|ao|aj|an|am|aš");
-        wordStart.add(".+(a|i|o)staj");
-        wordEnd.add("asmo|aste|ahu|ati|emo|ete|aše|ali|ući|ala|alo|ale|mo|ao|em|eš|at|ah|te|e|u|");
-        wordStart.add(".+(b|c|č|ć|d|e|f|g|j|k|n|r|t|u|v)a");
-        wordEnd.add("lama|lima|lom|lu|li|la|le|lo|l");
-        wordStart.add(".+(t|č|j|ž|š)aj");
-        wordEnd.add("evima|evi|eva|eve|ama|ima|em|a|e|i|u|");
-        wordStart.add(".+([^o]m|ič|nč|uč|b|c|ć|d|đ|h|j|k|l|n|p|r|s|š|v|z|ž)a");
-        wordEnd.add("jući|vši|smo|ste|jmo|jte|mo|te|ju|ti|še|hu|la|li|le|lo|na|no|ni|ne|t|h|o|j|n|m|š");
-        wordStart.add(".+(a|i|o)sta");
-        wordEnd.add(
-                "dosmo|doste|doše|nemo|demo|nete|dete|nimo|nite|nila|vši|nem|dem|neš|deš|doh|de|ti|ne|nu|du|la|li|lo|le|t|o");
-        wordStart.add(".+ta");
-        wordEnd.add("smo|ste|jmo|jte|vši|ti|mo|te|ju|še|la|lo|le|li|na|no|ni|ne|n|j|o|m|š|t|h");
-        wordStart.add(".+inj");
-        wordEnd.add("asmo|aste|ati|emo|ete|ali|ala|alo|ale|aše|ahu|em|eš|at|ah|ao");
-        wordStart.add(".+as");
-        wordEnd.add("temo|tete|timo|tite|tući|tem|teš|tao|te|li|ti|la|lo|le");
-        wordStart.add(".+(elj|ulj|tit|ac|ič|od|oj|et|av|ov)i");
-        wordEnd.add("vši|eći|smo|ste|še|mo|te|ti|li|la|lo|le|m|š|t|h|o");
-        wordStart.add(".+(tit|jeb|ar|ed|uš|ič)i");
-        wordEnd.add("jemo|jete|jem|ješ|smo|ste|jmo|jte|vši|mo|še|te|ti|ju|je|la|lo|li|le|t|m|š|h|j|o");
-        wordStart.add(".+(b|č|d|l|m|p|r|s|š|ž)i");
-        wordEnd.add(
-                "jemo|jete|jem|ješ|smo|ste|jmo|jte|vši|mo|lu|še|te|ti|ju|je|la|lo|li|le|t|m|š|h|j|o");
-        wordStart.add(".+luč");
-        wordEnd.add(
-                "ujete|ujući|ujemo|ujem|uješ|ismo|iste|ujmo|ujte|uje|uju|iše|iti|imo|ite|ila|ilo|ili|ile|ena|eno|eni|ene|uj|io|en|im|iš|it|ih|e|i");
-        wordStart.add(".+jeti");
-        wordEnd.add("smo|ste|še|mo|te|ti|li|la|lo|le|m|š|t|h|o");
-        wordStart.add(".+e");
-        wordEnd.add("lama|lima|lom|lu|li|la|le|lo|l");
-        wordStart.add(".+i");
-        wordEnd.add("lama|lima|lom|lu|li|la|le|lo|l");
-        wordStart.add(".+at");
-        wordEnd.add(
-                "ijega|ijemu|ijima|ijeg|ijem|ijih|ijim|ima|oga|ome|omu|iji|ije|ija|iju|oj|og|om|im|ih|a|u|i|e|o|");
-        wordStart.add(".+et");
-        wordEnd.add("avši|ući|emo|imo|em|eš|e|u|i");
-        wordStart.add(".+");
-        wordEnd.add(
-                "ajući|alima|alom|avši|asmo|aste|ajmo|ajte|ivši|amo|ate|aju|ati|aše|ahu|ali|ala|ale|alo|ana|ano|ani|ane|am|aš|at|ah|ao|aj|an");
-        wordStart.add(".+");
-        wordEnd.add(
-                "anje|enje|anja|enja|enom|enoj|enog|enim|enih|anom|anoj|anog|anim|anih|eno|ovi|ova|oga|ima|ove|enu|anu|ena|ama");
-        wordStart.add(".+");
-        wordEnd.add(
-                "nijega|nijemu|nijima|nijeg|nijem|nijim|nijih|nima|niji|nije|nija|niju|noj|nom|nog|nim|nih|an|na|nu|ni|ne|no");
-        wordStart.add(".+");
-        wordEnd.add("om|og|im|ih|em|oj|an|u|o|i|e|a");
-
-        assert wordStart.size() == wordEnd.size();
-
-        /* Lista morfoloških obrazaca reči.
-         * The list of morphological patterns of words.
-         */
-        List<Pattern> wordPats = new ArrayList<>(wordStart.size());
-
-        for (int i = 0; i < wordStart.size(); i++) {
-            String pattern = "^(" + wordStart.get(i) + ")(" + wordEnd.get(i) + ")$";
-            wordPats.add(Pattern.compile(pattern));
-        }
-
-        return wordPats;
-    }
 }
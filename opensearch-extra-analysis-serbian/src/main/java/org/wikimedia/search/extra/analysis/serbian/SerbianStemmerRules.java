@@ -0,0 +1,189 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.wikimedia.search.extra.analysis.common.RuleFile;
+
+/**
+ * The rules of {@link LjubesicPandzicStemmer}: stop words, suffix transformations and word
+ * rules.
+ *
+ * <p>The rules are kept in the {@value #RULES} rule file (see {@link RuleFile}), in
+ * {@code src/main/rules}. Compiling the word rules into an automaton is the slow part of
+ * loading them, so when the plugin is built, {@link #main(String[])} compiles them into the
+ * {@value #COMPILED} resource, which is loaded with a single read. Rules given with a filter's
+ * {@value RuleFile#PATH_SETTING} are compiled when the index is created.
+ */
+public final class SerbianStemmerRules {
+
+    static final String RULES = "ljubesic_pandzic_rules.txt";
+    static final String COMPILED = "ljubesic_pandzic_rules.bin";
+
+    /** Version of the rule file format, and of the compiled form. */
+    static final int VERSION = 1;
+
+    private static final String CODEC = "SerbianStemmerRules";
+
+    private static final String STOP_WORDS = "stop_words";
+    private static final String TRANSFORMATIONS = "transformations";
+    private static final String WORD_RULES = "word_rules";
+
+    /**
+     * Lista stop-reči. Korišćena je implementacija u vidu hashseta radi brzine.
+     *
+     * <p><i>The list of stop-words. A hashset implementation was used for the sake of efficiency.</i>
+     *
+     * <p>It ignores case, so it can be probed directly with the term buffer, without lowercasing
+     * the word first.
+     */
+    final CharArraySet stopSet;
+
+    /**
+     * Mapa sufiksnih transformacija.
+     *
+     * <p><i>The map of suffix transformations.</i>
+     */
+    final SuffixTransformations transformations;
+
+    /**
+     * Lista morfoloških obrazaca reči, kompajlirana u jedan automat.
+     *
+     * <p><i>The list of morphological patterns of words, compiled into a single automaton.</i>
+     */
+    final WordRuleAutomaton wordRules;
+
+    private SerbianStemmerRules(List<String> stopWords, SuffixTransformations transformations,
+            WordRuleAutomaton wordRules) {
+        this.stopSet = CharArraySet.unmodifiableSet(new CharArraySet(stopWords, true));
+        this.transformations = transformations;
+        this.wordRules = wordRules;
+    }
+
+    /* Loaded on first use, so that rules from a file don't need the defaults. */
+    private static final class Defaults {
+        static final SerbianStemmerRules RULES = loadDefaults();
+    }
+
+    /**
+     * The rules shipped with the plugin.
+     */
+    public static SerbianStemmerRules defaults() {
+        return Defaults.RULES;
+    }
+
+    private static SerbianStemmerRules loadDefaults() {
+        try {
+            try (InputStream stream = SerbianStemmerRules.class.getResourceAsStream(COMPILED)) {
+                if (stream != null) {
+                    return read(new ByteArrayDataInput(stream.readAllBytes()));
+                }
+            }
+            // not compiled (e.g., when running from an IDE)
+            try (InputStream stream = SerbianStemmerRules.class.getResourceAsStream(RULES)) {
+                if (stream == null) {
+                    throw new IllegalStateException("Neither " + COMPILED + " nor " + RULES + " is on the classpath");
+                }
+                return parse(new BufferedReader(new InputStreamReader(stream, UTF_8)), RULES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the Serbian stemmer rules", e);
+        }
+    }
+
+    /**
+     * Compile rules from a rule file.
+     *
+     * @param source where the rules come from, for error messages
+     * @throws IllegalArgumentException if the rules are malformed
+     */
+    public static SerbianStemmerRules parse(BufferedReader reader, String source) throws IOException {
+        RuleFile file = RuleFile.parse(reader, source, VERSION, STOP_WORDS, TRANSFORMATIONS, WORD_RULES);
+        List<String> wordStarts = new ArrayList<>();
+        List<String> wordEnds = new ArrayList<>();
+        for (String[] rule : file.entries(WORD_RULES, 2)) {
+            wordStarts.add(rule[0]);
+            wordEnds.add(rule[1]);
+        }
+        return new SerbianStemmerRules(file.words(STOP_WORDS),
+                new SuffixTransformations(file.pairs(TRANSFORMATIONS)),
+                new WordRuleAutomaton(wordStarts, wordEnds));
+    }
+
+    /**
+     * Compile rules from a rule file, e.g., one given with {@value RuleFile#PATH_SETTING}.
+     */
+    public static SerbianStemmerRules parse(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+            return parse(reader, path.toString());
+        }
+    }
+
+    static SerbianStemmerRules read(DataInput in) throws IOException {
+        CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+        List<String> stopWords = new ArrayList<>(in.readSetOfStrings());
+        SuffixTransformations transformations = SuffixTransformations.read(in);
+        return new SerbianStemmerRules(stopWords, transformations, WordRuleAutomaton.read(in));
+    }
+
+    void write(DataOutput out) throws IOException {
+        CodecUtil.writeHeader(out, CODEC, VERSION);
+        List<String> stopWords = new ArrayList<>();
+        for (Object word : stopSet) {
+            stopWords.add(new String((char[]) word));
+        }
+        out.writeSetOfStrings(new TreeSet<>(stopWords));
+        transformations.write(out);
+        wordRules.write(out);
+    }
+
+    static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeVInt(values.length);
+        for (int value : values) {
+            out.writeZInt(value);
+        }
+    }
+
+    static int[] readInts(DataInput in) throws IOException {
+        int[] values = new int[in.readVInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readZInt();
+        }
+        return values;
+    }
+
+    /**
+     * Compile the rules at build time.
+     *
+     * <p>Usage: {@code SerbianStemmerRules <rule file> <output file>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: SerbianStemmerRules <rule file> <output file>");
+        }
+        SerbianStemmerRules rules = parse(Paths.get(args[0]));
+        Path output = Paths.get(args[1]);
+        Files.createDirectories(output.getParent());
+        try (OutputStream stream = Files.newOutputStream(output)) {
+            rules.write(new OutputStreamDataOutput(stream));
+        }
+    }
+}
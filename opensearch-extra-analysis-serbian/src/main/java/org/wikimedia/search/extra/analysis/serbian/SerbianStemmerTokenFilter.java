@@ -1,10 +1,17 @@
 package org.wikimedia.search.extra.analysis.serbian;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.StemLookup;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.common.stats.TokenStats;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -12,10 +19,136 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 public class SerbianStemmerTokenFilter extends TokenFilter {
 
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
     private static final LjubesicPandzicStemmer STEMMER = new LjubesicPandzicStemmer();
+    private static final LjubesicPandzicStemmer ACCENT_STRIPPING_STEMMER =
+            new LjubesicPandzicStemmer(SerbianStemmerRules.defaults(), true);
+    private static final StemTable STEM_TABLE = StemTable.load();
+    private final LjubesicPandzicStemmer stemmer;
+    /* Precomputed stems of common words, or null if the table wasn't built or doesn't apply. */
+    private final StemTable.Reader table;
+    /* Known stems from the memo and node cache, or null if both are disabled. Kept across reset(). */
+    private final StemLookup stems;
+    private final boolean preserveOriginal;
+    /* Whether to lowercase each term, in the same scan that sorts its chars for the stemmer. */
+    private final boolean lowercase;
+    /* The current word in Latin script, when preserving originals. */
+    private char[] original = new char[0];
+    private int originalLength;
+    /* The stemmed token, when its original is still to be emitted. */
+    private State stemmed;
+    /* Counts for the node's analysis stats, or null if they aren't kept. */
+    private final TokenStats stats;
 
     public SerbianStemmerTokenFilter(TokenStream in) {
+        this(in, 0, null);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache) {
+        this(in, memoSize, cache, false);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none
+     * @param preserveOriginal also emit each word (converted to Latin script) at the position of
+     *     its stem, unless they are the same
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache, boolean preserveOriginal) {
+        this(in, memoSize, cache, preserveOriginal, null);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none
+     * @param preserveOriginal also emit each word (converted to Latin script) at the position of
+     *     its stem, unless they are the same
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache, boolean preserveOriginal,
+            FilterStats stats) {
+        this(in, STEMMER, STEM_TABLE, memoSize, cache, preserveOriginal, false, stats);
+    }
+
+    /**
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param cache node-wide stem cache, or null for none; words with accents have other stems
+     *     when they are stripped, so it must not be shared between filters that strip accents
+     *     and filters that don't
+     * @param preserveOriginal also emit each word (converted to Latin script) at the position of
+     *     its stem, unless they are the same
+     * @param stripAccents strip pitch accents before stemming (see
+     *     {@link LjubesicPandzicStemmer#LjubesicPandzicStemmer(SerbianStemmerRules, boolean)})
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, int memoSize, StemCache cache, boolean preserveOriginal,
+            boolean stripAccents, FilterStats stats) {
+        // the stems in the table have no accents, so stripping them doesn't change them
+        this(in, stripAccents ? ACCENT_STRIPPING_STEMMER : STEMMER, STEM_TABLE, memoSize, cache, preserveOriginal,
+                false, stats);
+    }
+
+    /**
+     * A filter that also lowercases each term, for the prebuilt {@link BcmsAnalyzer}. Terms are
+     * lowercased before their stems are looked up, so the cache can be shared with other filters.
+     *
+     * @param cache node-wide stem cache, or null for none
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    SerbianStemmerTokenFilter(TokenStream in, StemCache cache, FilterStats stats) {
+        this(in, STEMMER, STEM_TABLE, 0, cache, false, true, stats);
+    }
+
+    /**
+     * A filter with a stemmer with other rules. The stem table and the node cache hold stems
+     * by the shipped rules, so they aren't used.
+     *
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, LjubesicPandzicStemmer stemmer, int memoSize) {
+        this(in, stemmer, memoSize, false);
+    }
+
+    /**
+     * A filter with a stemmer with other rules. The stem table and the node cache hold stems
+     * by the shipped rules, so they aren't used.
+     *
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param preserveOriginal also emit each word (converted to Latin script) at the position of
+     *     its stem, unless they are the same
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, LjubesicPandzicStemmer stemmer, int memoSize,
+            boolean preserveOriginal) {
+        this(in, stemmer, memoSize, preserveOriginal, null);
+    }
+
+    /**
+     * A filter with a stemmer with other rules. The stem table and the node cache hold stems
+     * by the shipped rules, so they aren't used.
+     *
+     * @param memoSize number of recent words to remember the stems of, or 0 for none
+     * @param preserveOriginal also emit each word (converted to Latin script) at the position of
+     *     its stem, unless they are the same
+     * @param stats the counters to add this filter's counts to, or null for none
+     */
+    public SerbianStemmerTokenFilter(TokenStream in, LjubesicPandzicStemmer stemmer, int memoSize,
+            boolean preserveOriginal, FilterStats stats) {
+        this(in, stemmer, null, memoSize, null, preserveOriginal, false, stats);
+    }
+
+    private SerbianStemmerTokenFilter(TokenStream in, LjubesicPandzicStemmer stemmer, StemTable stemTable,
+            int memoSize, StemCache cache, boolean preserveOriginal, boolean lowercase, FilterStats stats) {
         super(in);
+        this.stemmer = stemmer;
+        table = stemTable == null ? null : stemTable.newReader();
+        stems = StemLookup.create(memoSize, cache);
+        this.preserveOriginal = preserveOriginal;
+        this.lowercase = lowercase;
+        this.stats = stats == null ? null : stats.newTokenStats();
     }
 
     /* Marked final because "the TokenStream-API in Lucene is based on the
@@ -26,15 +159,80 @@ public class SerbianStemmerTokenFilter extends TokenFilter {
      */
     @Override
     public final boolean incrementToken() throws IOException {
+        if (stemmed != null) {
+            // the original goes right after its stem, at the same position
+            restoreState(stemmed);
+            stemmed = null;
+            termAtt.copyBuffer(original, 0, originalLength);
+            posIncAtt.setPositionIncrement(0);
+            return true;
+        }
         if (input.incrementToken()) {
-            String converted = STEMMER.stemWord(termAtt.toString());
-            if (converted != null) { // if we can't stem it, return unchanged
-                termAtt.setEmpty().append(converted);
-            }
+            if (preserveOriginal) saveOriginal();
+            stem();
+            if (preserveOriginal && !isOriginal()) stemmed = captureState();
             return true;
         } else {
             return false;
         }
     }
 
+    private void stem() throws IOException {
+        if (stats == null) {
+            stemTerm();
+            return;
+        }
+        stats.start(termAtt);
+        if (stemTerm()) {
+            stats.cacheHit();
+        } else {
+            stats.cacheMiss();
+        }
+        stats.end(termAtt);
+    }
+
+    /* Stem the term in place, returning whether its stem was already known. */
+    private boolean stemTerm() throws IOException {
+        // the scan that tells the stemmer what to convert also tells the stats, so with stats
+        // on, every term is classified before its stem is looked up
+        boolean classified = lowercase || stats != null;
+        int classes = lowercase ? LjubesicPandzicStemmer.lowercase(termAtt.buffer(), termAtt.length())
+                : stats != null ? LjubesicPandzicStemmer.classify(termAtt.buffer(), termAtt.length()) : 0;
+        if (stats != null && LjubesicPandzicStemmer.convertsCyrillic(classes)) stats.transliterated();
+        if (stems != null && stems.replaceWithStem(termAtt)) return true;
+        boolean known = table != null && table.replaceWithStem(termAtt);
+        if (!known) {
+            int length = termAtt.length();
+            char[] buffer = termAtt.resizeBuffer(stemmer.bufferLength(length));
+            if (!classified) classes = LjubesicPandzicStemmer.classify(buffer, length);
+            termAtt.setLength(stemmer.stem(buffer, length, classes));
+        }
+        if (stems != null) stems.store(termAtt);
+        return known;
+    }
+
+    private void saveOriginal() {
+        int length = termAtt.length();
+        // converting to Latin can turn one char into two
+        original = ArrayUtil.grow(original, 2 * length);
+        System.arraycopy(termAtt.buffer(), 0, original, 0, length);
+        originalLength = stemmer.toLatin(original, length);
+    }
+
+    private boolean isOriginal() {
+        return Arrays.equals(termAtt.buffer(), 0, termAtt.length(), original, 0, originalLength);
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        if (stats != null) stats.flush();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        stemmed = null;
+    }
+
 }
@@ -0,0 +1,205 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.FSTCompiler;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * Precomputed stems of the most common words, so that they can be looked up in time linear
+ * in the length of the word, without running the stemming rules.
+ *
+ * <p>The table is built when the plugin is built, by running {@link #main(String[])} over the
+ * word list in {@code src/main/stem-table}, and is shipped as the {@value #RESOURCE} resource.
+ * It is an FST from each word to the offset and length of its stem in a shared pool of stems.
+ * As a resource inside the plugin jar, it can't be memory mapped, but it is small enough to
+ * just load onto the heap.
+ */
+public final class StemTable {
+
+    static final String RESOURCE = "stem_table.bin";
+
+    /** Longer words are rarely common, so they aren't looked up. */
+    static final int MAX_WORD_LENGTH = 32;
+
+    private static final String CODEC = "SerbianStemTable";
+    private static final int VERSION = 0;
+
+    /* Stems of words up to MAX_WORD_LENGTH are well under 2^7 chars. */
+    private static final int LENGTH_BITS = 7;
+    private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+
+    private static final String LATIN = "abcčćdđefghijklmnoprsštuvzž";
+    private static final String CYRILLIC = "абцчћдђефгхијклмнопрсштувзж";
+
+    private final FST<Long> fst;
+    private final char[] stems;
+
+    private StemTable(FST<Long> fst, char[] stems) {
+        this.fst = fst;
+        this.stems = stems;
+    }
+
+    /**
+     * Load the table shipped with the plugin.
+     *
+     * @return the table, or null if it wasn't built (e.g., when running from an IDE)
+     */
+    static StemTable load() {
+        try (InputStream stream = StemTable.class.getResourceAsStream(RESOURCE)) {
+            if (stream == null) return null;
+            return read(new InputStreamDataInput(new BufferedInputStream(stream)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the Serbian stem table", e);
+        }
+    }
+
+    static StemTable read(DataInput in) throws IOException {
+        CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+        char[] stems = in.readString().toCharArray();
+        FST<Long> fst = new FST<>(FST.readMetadata(in, PositiveIntOutputs.getSingleton()), in);
+        return new StemTable(fst, stems);
+    }
+
+    void write(DataOutput out) throws IOException {
+        CodecUtil.writeHeader(out, CODEC, VERSION);
+        out.writeString(new String(stems));
+        fst.save(out, out);
+    }
+
+    /**
+     * Build a table from words to their stems.
+     */
+    static StemTable build(SortedMap<String, String> wordStems) throws IOException {
+        StringBuilder pool = new StringBuilder();
+        Map<String, Integer> offsets = new HashMap<>();
+        FSTCompiler<Long> compiler =
+                new FSTCompiler.Builder<>(FST.INPUT_TYPE.BYTE2, PositiveIntOutputs.getSingleton()).build();
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        // String order is UTF-16 order, which is what the FST needs
+        for (Map.Entry<String, String> entry : wordStems.entrySet()) {
+            String stem = entry.getValue();
+            if (stem.length() > LENGTH_MASK) {
+                throw new IllegalArgumentException("Stem too long: " + stem);
+            }
+            int offset = offsets.computeIfAbsent(stem, s -> pool.append(s).length() - s.length());
+            compiler.add(Util.toUTF16(entry.getKey(), scratch), (long) offset << LENGTH_BITS | stem.length());
+        }
+        FST<Long> fst = FST.fromFSTReader(compiler.compile(), compiler.getFSTReader());
+        return new StemTable(fst, pool.toString().toCharArray());
+    }
+
+    /** A lookup cursor for the table; not thread safe, so each filter needs its own. */
+    Reader newReader() {
+        return new Reader();
+    }
+
+    final class Reader {
+        private final FST.BytesReader bytesReader = fst.getBytesReader();
+        private final FST.Arc<Long> arc = new FST.Arc<>();
+
+        private Reader() {
+        }
+
+        /**
+         * If the term is in the table, replace it with its stem and return true.
+         */
+        boolean replaceWithStem(CharTermAttribute termAtt) throws IOException {
+            int length = termAtt.length();
+            if (length == 0 || length > MAX_WORD_LENGTH) return false;
+            char[] buffer = termAtt.buffer();
+            fst.getFirstArc(arc);
+            long output = 0;
+            for (int i = 0; i < length; i++) {
+                if (fst.findTargetArc(buffer[i], arc, arc, bytesReader) == null) return false;
+                output += arc.output();
+            }
+            if (!arc.isFinal()) return false;
+            output += arc.nextFinalOutput();
+
+            int offset = (int) (output >>> LENGTH_BITS);
+            int stemLength = (int) output & LENGTH_MASK;
+            char[] target = termAtt.resizeBuffer(stemLength);
+            System.arraycopy(stems, offset, target, 0, stemLength);
+            termAtt.setLength(stemLength);
+            return true;
+        }
+    }
+
+    /**
+     * Build the table at build time: stem each word in the word list, in lowercase and
+     * capitalized, in Latin and Cyrillic, and write the table to the output file.
+     *
+     * <p>Usage: {@code StemTable <word list> <output file>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: StemTable <word list> <output file>");
+        }
+        LjubesicPandzicStemmer stemmer = new LjubesicPandzicStemmer();
+        SortedMap<String, String> wordStems = new TreeMap<>();
+        for (String line : Files.readAllLines(Paths.get(args[0]), UTF_8)) {
+            String word = line.trim();
+            if (word.isEmpty() || word.startsWith("#") || word.length() > MAX_WORD_LENGTH) continue;
+            String cyrillic = toCyrillic(word);
+            for (String form : new String[] {word, capitalize(word), cyrillic, capitalize(cyrillic)}) {
+                wordStems.put(form, stemmer.stemWord(form));
+            }
+        }
+
+        Path output = Paths.get(args[1]);
+        Files.createDirectories(output.getParent());
+        try (OutputStream stream = Files.newOutputStream(output)) {
+            build(wordStems).write(new OutputStreamDataOutput(stream));
+        }
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /* Serbian Latin to Cyrillic; the table just needs likely spellings, not perfect ones. */
+    static String toCyrillic(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            char next = i + 1 < word.length() ? word.charAt(i + 1) : 0;
+            if (c == 'l' && next == 'j') {
+                sb.append('љ');
+                i++;
+            } else if (c == 'n' && next == 'j') {
+                sb.append('њ');
+                i++;
+            } else if (c == 'd' && next == 'ž') {
+                sb.append('џ');
+                i++;
+            } else {
+                int pos = LATIN.indexOf(c);
+                sb.append(pos < 0 ? c : CYRILLIC.charAt(pos));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.wikimedia.search.extra.analysis.common.SuffixTrie;
+
+/**
+ * Suffix transformations, packed into a trie of the reversed suffixes, so that the longest
+ * suffix of a word that has a transformation is found in a single backward scan.
+ */
+final class SuffixTransformations {
+    /** The suffixes; the value of each is 1 + the index of its replacement. */
+    private final SuffixTrie suffixes;
+    private final char[][] replacements;
+    /** How much longer a replacement can be than the suffix it replaces. */
+    final int maxGrowth;
+
+    private SuffixTransformations(SuffixTrie suffixes, char[][] replacements, int maxGrowth) {
+        this.suffixes = suffixes;
+        this.replacements = replacements;
+        this.maxGrowth = maxGrowth;
+    }
+
+    SuffixTransformations(Map<String, String> transformations) {
+        Map<String, Integer> indexes = new HashMap<>();
+        replacements = new char[transformations.size()][];
+        int growth = 0;
+        for (Map.Entry<String, String> entry : transformations.entrySet()) {
+            replacements[indexes.size()] = entry.getValue().toCharArray();
+            indexes.put(entry.getKey(), indexes.size() + 1);
+            growth = Math.max(growth, entry.getValue().length() - entry.getKey().length());
+        }
+        suffixes = new SuffixTrie(indexes);
+        maxGrowth = growth;
+    }
+
+    static SuffixTransformations read(DataInput in) throws IOException {
+        SuffixTrie suffixes = SuffixTrie.read(in);
+        char[][] replacements = new char[in.readVInt()][];
+        for (int i = 0; i < replacements.length; i++) {
+            replacements[i] = in.readString().toCharArray();
+        }
+        return new SuffixTransformations(suffixes, replacements, in.readVInt());
+    }
+
+    void write(DataOutput out) throws IOException {
+        suffixes.write(out);
+        out.writeVInt(replacements.length);
+        for (char[] replacement : replacements) {
+            out.writeString(new String(replacement));
+        }
+        out.writeVInt(maxGrowth);
+    }
+
+    /**
+     * Replace the longest suffix of the word that has a transformation. A transformation of the
+     * empty suffix, on the root, applies to every word that has no longer match.
+     *
+     * @return the new length of the word
+     */
+    int apply(char[] buffer, int length) {
+        int node = SuffixTrie.ROOT;
+        int matchLength = 0;
+        int match = suffixes.value(node);
+        for (int i = length - 1; i >= 0; i--) {
+            node = suffixes.child(node, buffer[i]);
+            if (node < 0) break;
+            if (suffixes.value(node) != 0) {
+                match = suffixes.value(node);
+                matchLength = length - i;
+            }
+        }
+        if (match == 0) {
+            return length;
+        }
+        char[] replacement = replacements[match - 1];
+        System.arraycopy(replacement, 0, buffer, length - matchLength, replacement.length);
+        return length - matchLength + replacement.length;
+    }
+
+    /**
+     * Whether every suffix that has a transformation contains one of the given chars, so that
+     * no transformation applies to a word that has none of them.
+     */
+    boolean everySuffixContainsAnyOf(String chars) {
+        return suffixes.everyWordContainsAnyOf(chars);
+    }
+}
@@ -0,0 +1,485 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+
+/**
+ * Deterministic automaton equivalent to running the list of {@code ^(.+X)(E)$} word patterns in
+ * order and keeping the first one whose stem (group 1) is accepted.
+ *
+ * <p>Every rule is a word start {@code .+X} and a word end {@code E}, where {@code X} and {@code E}
+ * use only literals, character classes and (nested) alternation. All the rules are compiled once
+ * into a single DFA that reads the token right-to-left, so matching takes one pass over the end of
+ * the token, no matter how many rules there are.
+ *
+ * <p>For each rule, the regex engine picks the match with the longest {@code .+}, and for that
+ * length the first alternative of {@code X} that lets {@code E} match the rest of the word. Reading
+ * right-to-left, that is the first time the rule accepts, so only the first accept of every rule is
+ * considered. As with the regexes, if the stem of that match is rejected by the {@link StemCondition}
+ * the rule fails and the next one is tried.
+ */
+final class WordRuleAutomaton {
+
+    /** Checks whether a candidate stem may be returned. */
+    interface StemCondition {
+        boolean accept(char[] buffer, int length);
+    }
+
+    /** The rules are tracked in two longs while matching. */
+    private static final int MAX_RULES = 128;
+
+    /** Characters not mentioned by any rule (or supplementary code points) share class 0. */
+    private static final int OTHER_CLASS = 0;
+
+    private static final int DEAD_STATE = -1;
+
+    /** Class of each char below {@code classOf.length}, all others are {@link #OTHER_CLASS}. */
+    private final byte[] classOf;
+    private final int numClasses;
+
+    /** Next state, indexed by {@code state * numClasses + class}. */
+    private final int[] transitions;
+
+    /**
+     * For each state, the rules accepting there (ascending) and the length of their word end.
+     * Only the first alternative of X is kept for each rule, as the regex would.
+     */
+    private final int[][] acceptRules;
+    private final int[][] acceptEndLengths;
+
+    private final List<String> wordStarts;
+    private final List<String> wordEnds;
+
+    WordRuleAutomaton(List<String> wordStarts, List<String> wordEnds) {
+        if (wordStarts.size() != wordEnds.size()) {
+            throw new IllegalArgumentException("Word starts and word ends must come in pairs");
+        }
+        if (wordStarts.size() > MAX_RULES) {
+            throw new IllegalArgumentException("At most " + MAX_RULES + " word rules are supported");
+        }
+        this.wordStarts = new ArrayList<>(wordStarts);
+        this.wordEnds = new ArrayList<>(wordEnds);
+
+        List<List<List<Atom>>> starts = new ArrayList<>(wordStarts.size());
+        List<List<List<Atom>>> ends = new ArrayList<>(wordEnds.size());
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (int r = 0; r < wordStarts.size(); r++) {
+            String start = wordStarts.get(r);
+            if (!start.startsWith(".+")) {
+                throw new IllegalArgumentException("Word start must begin with .+: " + start);
+            }
+            starts.add(new RuleParser(start.substring(2), alphabet).parse());
+            ends.add(new RuleParser(wordEnds.get(r), alphabet).parse());
+        }
+
+        char maxChar = alphabet.isEmpty() ? 0 : alphabet.last();
+        classOf = new byte[maxChar + 1];
+        int cls = OTHER_CLASS;
+        for (char ch : alphabet) {
+            classOf[ch] = (byte) ++cls;
+        }
+        numClasses = cls + 1;
+        if (numClasses > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many distinct characters in word rules");
+        }
+
+        // NFA: one reversed sequence of class sets per (rule, X alternative, E alternative)
+        List<BitSet[]> sequences = new ArrayList<>();
+        List<int[]> sequenceAccepts = new ArrayList<>(); // {rule, X alternative, E length}
+        for (int r = 0; r < starts.size(); r++) {
+            List<List<Atom>> xAlts = starts.get(r);
+            for (int x = 0; x < xAlts.size(); x++) {
+                for (List<Atom> e : ends.get(r)) {
+                    List<Atom> seq = new ArrayList<>(xAlts.get(x));
+                    seq.addAll(e);
+                    BitSet[] reversed = new BitSet[seq.size()];
+                    for (int i = 0; i < reversed.length; i++) {
+                        reversed[i] = seq.get(seq.size() - 1 - i).toClasses(classOf, numClasses);
+                    }
+                    sequences.add(reversed);
+                    sequenceAccepts.add(new int[] {r, x, e.size()});
+                }
+            }
+        }
+
+        // subset construction; an NFA position is (sequence, chars consumed)
+        Map<List<Long>, Integer> stateIds = new HashMap<>();
+        List<long[]> states = new ArrayList<>();
+        long[] start = new long[sequences.size()];
+        for (int s = 0; s < start.length; s++) {
+            start[s] = position(s, 0);
+        }
+        stateIds.put(key(start), 0);
+        states.add(start);
+
+        List<int[]> transitionRows = new ArrayList<>();
+        List<int[]> rules = new ArrayList<>();
+        List<int[]> endLengths = new ArrayList<>();
+        for (int id = 0; id < states.size(); id++) {
+            long[] state = states.get(id);
+            int[] row = new int[numClasses];
+            for (int c = 0; c < numClasses; c++) {
+                long[] next = step(state, c, sequences);
+                if (next.length == 0) {
+                    row[c] = DEAD_STATE;
+                } else {
+                    List<Long> k = key(next);
+                    Integer nextId = stateIds.get(k);
+                    if (nextId == null) {
+                        nextId = states.size();
+                        stateIds.put(k, nextId);
+                        states.add(next);
+                    }
+                    row[c] = nextId;
+                }
+            }
+            transitionRows.add(row);
+            collectAccepts(state, sequences, sequenceAccepts, rules, endLengths);
+        }
+
+        transitions = new int[states.size() * numClasses];
+        for (int id = 0; id < states.size(); id++) {
+            System.arraycopy(transitionRows.get(id), 0, transitions, id * numClasses, numClasses);
+        }
+        acceptRules = rules.toArray(new int[0][]);
+        acceptEndLengths = endLengths.toArray(new int[0][]);
+    }
+
+    private WordRuleAutomaton(byte[] classOf, int[] transitions, int[][] acceptRules, int[][] acceptEndLengths,
+            List<String> wordStarts, List<String> wordEnds) {
+        this.classOf = classOf;
+        this.numClasses = transitions.length / acceptRules.length;
+        this.transitions = transitions;
+        this.acceptRules = acceptRules;
+        this.acceptEndLengths = acceptEndLengths;
+        this.wordStarts = wordStarts;
+        this.wordEnds = wordEnds;
+    }
+
+    /**
+     * Read an automaton written by {@link #write(DataOutput)}, without redoing the subset
+     * construction.
+     */
+    static WordRuleAutomaton read(DataInput in) throws IOException {
+        byte[] classOf = new byte[in.readVInt()];
+        in.readBytes(classOf, 0, classOf.length);
+        int[] transitions = SerbianStemmerRules.readInts(in);
+        int[][] acceptRules = new int[in.readVInt()][];
+        int[][] acceptEndLengths = new int[acceptRules.length][];
+        for (int i = 0; i < acceptRules.length; i++) {
+            acceptRules[i] = SerbianStemmerRules.readInts(in);
+            acceptEndLengths[i] = SerbianStemmerRules.readInts(in);
+        }
+        int rules = in.readVInt();
+        List<String> wordStarts = new ArrayList<>(rules);
+        List<String> wordEnds = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            wordStarts.add(in.readString());
+            wordEnds.add(in.readString());
+        }
+        return new WordRuleAutomaton(classOf, transitions, acceptRules, acceptEndLengths, wordStarts, wordEnds);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeVInt(classOf.length);
+        out.writeBytes(classOf, classOf.length);
+        SerbianStemmerRules.writeInts(out, transitions);
+        out.writeVInt(acceptRules.length);
+        for (int i = 0; i < acceptRules.length; i++) {
+            SerbianStemmerRules.writeInts(out, acceptRules[i]);
+            SerbianStemmerRules.writeInts(out, acceptEndLengths[i]);
+        }
+        out.writeVInt(wordStarts.size());
+        for (int i = 0; i < wordStarts.size(); i++) {
+            out.writeString(wordStarts.get(i));
+            out.writeString(wordEnds.get(i));
+        }
+    }
+
+    /**
+     * Find the stem given by the first matching rule.
+     *
+     * @param buffer the word
+     * @param length the length of the word in the buffer
+     * @param condition the condition the stem (group 1 of the pattern) must satisfy
+     * @return the length of the stem, or -1 if no rule applies
+     */
+    int stemLength(char[] buffer, int length, StemCondition condition) {
+        int bestRule = Integer.MAX_VALUE;
+        int bestStemLength = -1;
+        long seen0 = 0;
+        long seen1 = 0;
+        int firstLineBreak = -1; // computed lazily, only needed if a rule accepts
+
+        int state = 0;
+        int pos = length;
+        while (true) {
+            int[] rules = acceptRules[state];
+            // .+ needs at least one char
+            if (rules.length > 0 && pos > 0) {
+                if (firstLineBreak < 0) {
+                    firstLineBreak = firstLineBreak(buffer, length);
+                }
+                // . doesn't match line terminators, otherwise keep looking for a shorter .+
+                if (pos <= firstLineBreak) {
+                    int[] endLengths = acceptEndLengths[state];
+                    for (int i = 0; i < rules.length && rules[i] < bestRule; i++) {
+                        int rule = rules[i];
+                        long bit = 1L << (rule & 63);
+                        if (rule < 64) {
+                            if ((seen0 & bit) != 0) continue;
+                            seen0 |= bit;
+                        } else {
+                            if ((seen1 & bit) != 0) continue;
+                            seen1 |= bit;
+                        }
+                        int stemLength = length - endLengths[i];
+                        if (condition.accept(buffer, stemLength)) {
+                            bestRule = rule;
+                            bestStemLength = stemLength;
+                        }
+                    }
+                }
+            }
+            if (pos == 0 || bestRule == 0) {
+                break;
+            }
+
+            char ch = buffer[pos - 1];
+            int cls;
+            if (Character.isLowSurrogate(ch) && pos > 1 && Character.isHighSurrogate(buffer[pos - 2])) {
+                // a supplementary code point is a single char for the regex
+                cls = OTHER_CLASS;
+                pos -= 2;
+            } else {
+                cls = ch < classOf.length ? classOf[ch] : OTHER_CLASS;
+                pos--;
+            }
+            state = transitions[state * numClasses + cls];
+            if (state == DEAD_STATE) {
+                break;
+            }
+        }
+        return bestStemLength;
+    }
+
+    /**
+     * The regular expressions these rules stand for, in order.
+     */
+    List<Pattern> toPatterns() {
+        List<Pattern> patterns = new ArrayList<>(wordStarts.size());
+        for (int i = 0; i < wordStarts.size(); i++) {
+            patterns.add(Pattern.compile("^(" + wordStarts.get(i) + ")(" + wordEnds.get(i) + ")$"));
+        }
+        return patterns;
+    }
+
+    /* Index of the first char '.' won't match, or length if there is none.
+     */
+    private static int firstLineBreak(char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            switch (buffer[i]) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return i;
+                default:
+                    break;
+            }
+        }
+        return length;
+    }
+
+    private static long position(int sequence, int consumed) {
+        return ((long) sequence << 32) | consumed;
+    }
+
+    private static List<Long> key(long[] state) {
+        List<Long> key = new ArrayList<>(state.length);
+        for (long p : state) {
+            key.add(p);
+        }
+        return key;
+    }
+
+    private static long[] step(long[] state, int cls, List<BitSet[]> sequences) {
+        long[] next = new long[state.length];
+        int n = 0;
+        for (long p : state) {
+            int seq = (int) (p >>> 32);
+            int consumed = (int) p;
+            BitSet[] atoms = sequences.get(seq);
+            if (consumed < atoms.length && atoms[consumed].get(cls)) {
+                next[n++] = position(seq, consumed + 1);
+            }
+        }
+        return Arrays.copyOf(next, n);
+    }
+
+    private static void collectAccepts(long[] state, List<BitSet[]> sequences, List<int[]> sequenceAccepts,
+            List<int[]> rules, List<int[]> endLengths) {
+        // rule -> {X alternative, E length}, keeping the first X alternative
+        Map<Integer, int[]> best = new HashMap<>();
+        for (long p : state) {
+            int seq = (int) (p >>> 32);
+            if ((int) p != sequences.get(seq).length) {
+                continue;
+            }
+            int[] accept = sequenceAccepts.get(seq);
+            int[] current = best.get(accept[0]);
+            if (current == null || accept[1] < current[0]) {
+                best.put(accept[0], new int[] {accept[1], accept[2]});
+            }
+        }
+        int[] r = best.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] e = new int[r.length];
+        for (int i = 0; i < r.length; i++) {
+            e[i] = best.get(r[i])[1];
+        }
+        rules.add(r);
+        endLengths.add(e);
+    }
+
+    /* A single char of a rule: a literal or a (possibly negated) character class.
+     */
+    private static final class Atom {
+        private final String chars;
+        private final boolean negated;
+
+        Atom(String chars, boolean negated) {
+            this.chars = chars;
+            this.negated = negated;
+        }
+
+        BitSet toClasses(byte[] classOf, int numClasses) {
+            BitSet classes = new BitSet(numClasses);
+            for (int i = 0; i < chars.length(); i++) {
+                classes.set(classOf[chars.charAt(i)]);
+            }
+            if (negated) {
+                classes.flip(0, numClasses);
+            }
+            return classes;
+        }
+    }
+
+    /* Expands the limited regex syntax used by the rules (literals, [...], [^...], (a|b) and
+     * top-level a|b) into the list of all its alternatives, in the order the regex tries them.
+     */
+    private static final class RuleParser {
+        private final String rule;
+        private final TreeSet<Character> alphabet;
+        private int pos;
+
+        RuleParser(String rule, TreeSet<Character> alphabet) {
+            this.rule = rule;
+            this.alphabet = alphabet;
+        }
+
+        List<List<Atom>> parse() {
+            List<List<Atom>> alternatives = alternation();
+            if (pos != rule.length()) {
+                throw error();
+            }
+            return alternatives;
+        }
+
+        private List<List<Atom>> alternation() {
+            List<List<Atom>> alternatives = new ArrayList<>(sequence());
+            while (pos < rule.length() && rule.charAt(pos) == '|') {
+                pos++;
+                alternatives.addAll(sequence());
+            }
+            return alternatives;
+        }
+
+        private List<List<Atom>> sequence() {
+            List<List<Atom>> prefixes = new ArrayList<>();
+            prefixes.add(new ArrayList<>());
+            while (pos < rule.length() && rule.charAt(pos) != '|' && rule.charAt(pos) != ')') {
+                List<List<Atom>> items = item();
+                List<List<Atom>> extended = new ArrayList<>(prefixes.size() * items.size());
+                for (List<Atom> prefix : prefixes) {
+                    for (List<Atom> item : items) {
+                        List<Atom> seq = new ArrayList<>(prefix);
+                        seq.addAll(item);
+                        extended.add(seq);
+                    }
+                }
+                prefixes = extended;
+            }
+            return prefixes;
+        }
+
+        private List<List<Atom>> item() {
+            char ch = rule.charAt(pos++);
+            switch (ch) {
+                case '(':
+                    List<List<Atom>> group = alternation();
+                    if (pos >= rule.length() || rule.charAt(pos) != ')') {
+                        throw error();
+                    }
+                    pos++;
+                    return group;
+                case '[':
+                    boolean negated = pos < rule.length() && rule.charAt(pos) == '^';
+                    if (negated) pos++;
+                    int close = rule.indexOf(']', pos);
+                    // no unclosed or empty classes
+                    if (close <= pos) {
+                        throw error();
+                    }
+                    // only lists of literal chars are supported, so don't quietly take ranges,
+                    // escapes, nested classes, intersections or a later ^ as literals
+                    for (int i = pos; i < close; i++) {
+                        char c = rule.charAt(i);
+                        if (c == '-' || c == '\\' || c == '[' || c == '^' || c == '&' && rule.charAt(i + 1) == '&') {
+                            pos = i;
+                            throw error();
+                        }
+                    }
+                    String chars = rule.substring(pos, close);
+                    pos = close + 1;
+                    return single(new Atom(chars, negated));
+                case '.':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                case '\\':
+                case '^':
+                case '$':
+                    throw error();
+                default:
+                    return single(new Atom(String.valueOf(ch), false));
+            }
+        }
+
+        private List<List<Atom>> single(Atom atom) {
+            for (int i = 0; i < atom.chars.length(); i++) {
+                alphabet.add(atom.chars.charAt(i));
+            }
+            List<List<Atom>> alternatives = new ArrayList<>(1);
+            List<Atom> seq = new ArrayList<>(1);
+            seq.add(atom);
+            alternatives.add(seq);
+            return alternatives;
+        }
+
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("Unsupported word rule syntax at " + pos + ": " + rule);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.tests.analysis.BaseTokenStreamTestCase;
+import org.junit.Test;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+
+public class BcmsAnalyzerTest extends BaseTokenStreamTestCase {
+
+    @Test
+    public void testAnalyze() throws IOException {
+        try (Analyzer analyzer = new BcmsAnalyzer(null, null)) {
+            assertAnalyzesTo(analyzer, "Добро дошли на Википедију, ŠKOLSKE KNJIGE i ЉУБЉАНА",
+                    new String[] {"dobr", "došl", "na", "vikipedij", "školsk", "knjig", "i", "ljubljan"},
+                    new int[] {0, 6, 12, 15, 27, 35, 42, 44}, // start offsets
+                    new int[] {5, 11, 14, 25, 34, 41, 43, 51}); // end offsets
+        }
+    }
+
+    @Test
+    public void testSameAsSeparateLowercaseFilter() throws IOException {
+        // the stem table, the cache and the stemmer all see lowercased words
+        String text = "Добро ДОБРО dobro Dobro DOBRO Википедију VIKIPEDIJU Vikipediju ćevapčići ЋЕВАПЧИЋИ "
+                + "Џемпер DŽEMPER 1960-ih XVI. Ἀθῆναι İstanbul 𐐀𐐁";
+        StemCache cache = StemCache.create(1 << 20);
+        try (Analyzer fused = new BcmsAnalyzer(cache, null);
+             Analyzer chain = new Analyzer() {
+                 @Override
+                 protected TokenStreamComponents createComponents(String fieldName) {
+                     Tokenizer tok = new StandardTokenizer();
+                     TokenStream ts = new LowerCaseFilter(tok);
+                     ts = new SerbianStemmerTokenFilter(ts, 0, cache);
+                     return new TokenStreamComponents(tok, ts);
+                 }
+             }) {
+            // twice, so that the second round is answered by the cache
+            for (int i = 0; i < 2; i++) {
+                assertEquals(terms(chain, text), terms(fused, text));
+            }
+        }
+    }
+
+    private static String terms(Analyzer analyzer, String text) throws IOException {
+        StringBuilder terms = new StringBuilder();
+        try (TokenStream ts = analyzer.tokenStream("", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                terms.append(termAtt).append(' ');
+            }
+            ts.end();
+        }
+        return terms.toString();
+    }
+
+    @Test
+    public void testRandomStrings() throws IOException {
+        try (Analyzer analyzer = new BcmsAnalyzer(StemCache.create(1 << 20), null)) {
+            checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+        }
+    }
+}
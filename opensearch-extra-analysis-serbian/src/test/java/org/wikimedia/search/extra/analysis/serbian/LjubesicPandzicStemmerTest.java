@@ -2,6 +2,9 @@ package org.wikimedia.search.extra.analysis.serbian;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Test;
 
 public class LjubesicPandzicStemmerTest {
@@ -32,6 +35,46 @@ public class LjubesicPandzicStemmerTest {
         assertThat(stemmer.stemWord("kovacevac")).isEqualTo("kovacevc"); // -vac
         assertThat(stemmer.stemWord("tractrac")).isEqualTo("tractrc"); // -rac
         assertThat(stemmer.stemWord("raveraverave")).isEqualTo("raveraverav"); // -rave
+
+        // the longest transformation suffix wins
+        assertThat(stemmer.stemWord("teticima")).isEqualTo("tetik"); // -teticima, not -ticima
+        assertThat(stemmer.stemWord("prosjacima")).isEqualTo("prosjak"); // -jacima
+        assertThat(stemmer.stemWord("lozima")).isEqualTo("log"); // whole word is a suffix
+    }
+
+    @Test
+    public void testSyllabicR() {
+        // stems need a vowel, but a syllabic r will do
+        assertThat(stemmer.stemWord("rtom")).isEqualTo("rt"); // initial r
+        assertThat(stemmer.stemWord("grom")).isEqualTo("gr"); // final r
+        assertThat(stemmer.stemWord("smrom")).isEqualTo("smr");
+        assertThat(stemmer.stemWord("krvima")).isEqualTo("krv");
+        assertThat(stemmer.stemWord("KRVima")).isEqualTo("KRV");
+        assertThat(stemmer.stemWord("rrima")).isEqualTo("rr");
+        assertThat(stemmer.stemWord("grrom")).isEqualTo("grr");
+        // no vowel, no r, no stemming
+        assertThat(stemmer.stemWord("psima")).isEqualTo("psim");
+    }
+
+    @Test
+    public void testHasAVowel() {
+        assertThat(hasAVowel("r")).isTrue();
+        assertThat(hasAVowel("rt")).isTrue();
+        assertThat(hasAVowel("tr")).isTrue();
+        assertThat(hasAVowel("rr")).isTrue();
+        assertThat(hasAVowel("trg")).isTrue();
+        assertThat(hasAVowel("TRG")).isTrue();
+        assertThat(hasAVowel("tra")).isTrue();
+        assertThat(hasAVowel("kuć")).isTrue();
+        assertThat(hasAVowel("ps")).isFalse();
+        assertThat(hasAVowel("PSA")).isFalse(); // only lowercase vowels count
+        assertThat(hasAVowel("")).isFalse();
+        // only the given range is checked
+        assertThat(LjubesicPandzicStemmer.hasAVowel("psa".toCharArray(), 2)).isFalse();
+    }
+
+    private static boolean hasAVowel(String word) {
+        return LjubesicPandzicStemmer.hasAVowel(word.toCharArray(), word.length());
     }
 
     @Test
@@ -42,6 +85,10 @@ public class LjubesicPandzicStemmerTest {
         assertThat(stemmer.stemWord("bijaše")).isEqualTo("bijaše");
         assertThat(stemmer.stemWord("želimo")).isEqualTo("želimo");
         assertThat(stemmer.stemWord("možeš")).isEqualTo("možeš");
+        // case is ignored when checking, but preserved
+        assertThat(stemmer.stemWord("MOŽEŠ")).isEqualTo("MOŽEŠ");
+        assertThat(stemmer.stemWord("Želimo")).isEqualTo("Želimo");
+        assertThat(stemmer.stemWord("МОЖЕШ")).isEqualTo("MOŽEŠ");
     }
 
     @Test
@@ -63,4 +110,60 @@ public class LjubesicPandzicStemmerTest {
         assertThat(stemmer.stemWord("ውክፔዲያ")).isEqualTo("ውክፔዲያ"); // Amharic
         assertThat(stemmer.stemWord("ᐅᐃᑭᐱᑎᐊ")).isEqualTo("ᐅᐃᑭᐱᑎᐊ"); // Inuktitut
     }
+
+    @Test
+    public void testStemInPlace() {
+        String[] words = {"abdominalni", "забавама", "Љубљана", "џџџ", "нормалан", "možeš", "ᐅᐃᑭᐱᑎᐊ", ""};
+        for (String word : words) {
+            // garbage after the word must be ignored
+            char[] buffer = new char[stemmer.bufferLength(word.length())];
+            Arrays.fill(buffer, 'x');
+            word.getChars(0, word.length(), buffer, 0);
+            int length = stemmer.stem(buffer, word.length());
+            assertThat(new String(buffer, 0, length)).isEqualTo(stemmer.stemWord(word));
+        }
+        // digraphs grow the word before stemming
+        assertThat(stemmer.stemWord("Љубљана")).isEqualTo("Ljubljan");
+        assertThat(stemmer.stemWord("џџџ")).isEqualTo("dždždž");
+    }
+
+    @Test
+    public void testStripAccents() {
+        LjubesicPandzicStemmer stripping = new LjubesicPandzicStemmer(SerbianStemmerRules.defaults(), true);
+        String[][] words = {
+            // precomposed and combining, on vowels and syllabic r, in both scripts
+            {"kȕća", "kuća"}, {"rúka", "ruka"}, {"vòda", "voda"}, {"grȃdovima", "gradovima"}, {"žēna", "žena"},
+            {"pȑsti", "prsti"}, {"kŕvi", "krvi"}, {"ОСТА̄ЈЕ", "ОСТАЈЕ"}, {"ру́ка", "рука"}, {"су̏ша", "суша"},
+            {"ѝ", "и"}, {"лӯка", "лука"}, {"Ѐра", "Ера"},
+            // with digraphs, which grow the word
+            {"Љу̑бљана", "Љубљана"}, {"ње̏ни", "њени"}, {"џа̀ком", "џаком"},
+            // č, ć, đ, š and ž are kept, precomposed or not
+            {"čášu", "čašu"}, {"kuc\u0301a", "kuc\u0301a"}, {"kuc\u0301\u0300a", "kuc\u0301a"}, {"đȁk", "đak"},
+            // accents are stripped from other letters only if they are vowels
+            {"Éric", "Eric"}, {"ćao", "ćao"}, {"ń", "ń"},
+        };
+        for (String[] word : words) {
+            assertThat(stripping.stemWord(word[0])).as(word[0]).isEqualTo(stemmer.stemWord(word[1]));
+        }
+        assertThat(stripping.stemWord("kȕćama")).isEqualTo("kuć");
+        assertThat(stripping.stemWord("Љу̑бљана")).isEqualTo("Ljubljan");
+        // the default is to keep accents
+        assertThat(stemmer.stemWord("kȕća")).isEqualTo("kȕća");
+    }
+
+    @Test
+    public void testStemWords() {
+        String[] vocabulary = {"zabave", "забавама", "vašljivac", "biti", "jesam", "Википедију", "prst", ""};
+        Random random = new Random(42);
+        String[] words = new String[50_000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = vocabulary[random.nextInt(vocabulary.length)];
+        }
+        words[123] = null;
+        String[] stems = new String[words.length];
+        stemmer.stemWords(words, stems);
+        for (int i = 0; i < words.length; i++) {
+            assertThat(stems[i]).isEqualTo(words[i] == null ? null : stemmer.stemWord(words[i]));
+        }
+    }
 }
@@ -1,8 +1,11 @@
 package org.wikimedia.search.extra.analysis.serbian;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.equalTo;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -31,7 +34,61 @@ public class SerbianStemmerFilterOpenSearchTest extends OpenSearchTestCase {
         assertAnalyzerAvailable("serbian_redefined", "redefined.json");
     }
 
+    @Test
+    public void testMemo() throws IOException {
+        assertAnalyzerAvailable("serbian_memo", "memo.json");
+    }
+
+    @Test
+    public void testPreserveOriginal() throws IOException {
+        assertAnalyzerAvailable("serbian_preserve", "preserve.json", "Dobr Dobro došl došli na Vikipedij Vikipediju");
+    }
+
+    @Test
+    public void testStripAccents() throws IOException {
+        assertAnalyzerAvailable("serbian_strip_accents", "strip_accents.json", "До̏бро до̏шли на Википе́дију",
+                "Dobr došl na Vikipedij");
+    }
+
+    @Test
+    public void testBcms() throws IOException {
+        // prebuilt, so it needs no settings
+        assertAnalyzerAvailable("bcms", "prebuilt.json", "dobr došl na vikipedij");
+    }
+
+    @Test
+    public void testRulesPath() throws IOException {
+        Path home = createTempDir();
+        Files.createDirectories(home.resolve("config"));
+        Files.write(home.resolve("config").resolve("custom_rules.txt"),
+                "version 1\n[stop_words]\n[transformations]\n[word_rules]\n.+\tu\n".getBytes(UTF_8));
+        Settings indexSettings = settings(Version.CURRENT)
+                .put("index.analysis.filter.custom.type", "serbian_stemmer")
+                .put("index.analysis.filter.custom.rules_path", "custom_rules.txt")
+                .put("index.analysis.analyzer.serbian_custom.tokenizer", "standard")
+                .putList("index.analysis.analyzer.serbian_custom.filter", "custom")
+                .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
+                .build();
+        IndexSettings indexProps = IndexSettingsModule.newIndexSettings("test", indexSettings);
+        Settings settings = Settings.builder()
+                .put(Environment.PATH_HOME_SETTING.getKey(), home)
+                .build();
+        indexAnalyzers = createTestAnalysis(indexProps, settings,
+                new ExtraAnalysisSerbianPlugin(settings)).indexAnalyzers;
+        match("serbian_custom", "Добро дошли на Википедију", "Dobro došli na Vikipedij");
+    }
+
     private void assertAnalyzerAvailable(String analyzerName, String analysisResource) throws IOException {
+        assertAnalyzerAvailable(analyzerName, analysisResource, "Dobr došl na Vikipedij");
+    }
+
+    private void assertAnalyzerAvailable(String analyzerName, String analysisResource, String target)
+            throws IOException {
+        assertAnalyzerAvailable(analyzerName, analysisResource, "Добро дошли на Википедију", target);
+    }
+
+    private void assertAnalyzerAvailable(String analyzerName, String analysisResource, String source, String target)
+            throws IOException {
         Settings indexSettings = settings(Version.CURRENT)
                 .loadFromStream(analysisResource, this.getClass().getResourceAsStream(analysisResource), false)
                 .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
@@ -40,8 +97,9 @@ public class SerbianStemmerFilterOpenSearchTest extends OpenSearchTestCase {
         Settings settings = Settings.builder()
                 .put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
                 .build();
-        indexAnalyzers = createTestAnalysis(indexProps, settings, new ExtraAnalysisSerbianPlugin()).indexAnalyzers;
-        match(analyzerName, "Добро дошли на Википедију", "Dobr došl na Vikipedij");
+        indexAnalyzers = createTestAnalysis(indexProps, settings,
+                new ExtraAnalysisSerbianPlugin(settings)).indexAnalyzers;
+        match(analyzerName, source, target);
     }
 
     private void match(String analyzerName, String source, String target) throws IOException {
@@ -2,7 +2,10 @@ package org.wikimedia.search.extra.analysis.serbian;
 
 import static java.util.Collections.singletonList;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
 import java.util.HashSet;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -13,8 +16,13 @@ import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopFilter;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.tests.analysis.BaseTokenStreamTestCase;
 import org.junit.Test;
+import org.wikimedia.search.extra.analysis.common.StemCache;
+import org.wikimedia.search.extra.analysis.common.stats.AnalysisStats;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStats;
+import org.wikimedia.search.extra.analysis.common.stats.FilterStatsSnapshot;
 
 public class SerbianStemmerFilterTest extends BaseTokenStreamTestCase {
 
@@ -115,4 +123,152 @@ public class SerbianStemmerFilterTest extends BaseTokenStreamTestCase {
             }
         };
     }
+
+    @Test
+    public void testMemo() throws IOException {
+        // repeated words are served from the memo and cache, which are kept across reuse
+        String input = "Добро дошли на Википедију dobro došli na vikipediju добро";
+        String[] output = new String[] {"dobr", "došl", "na", "vikipedij", "dobr", "došl", "na", "vikipedij", "dobr"};
+        StemCache cache = StemCache.create(1 << 20);
+        for (Analyzer ws : Arrays.asList(
+                newSerbianStemmerWithMemo(2, null),
+                newSerbianStemmerWithMemo(1024, null),
+                newSerbianStemmerWithMemo(0, cache),
+                newSerbianStemmerWithMemo(2, cache))) {
+            try {
+                assertAnalyzesTo(ws, input, output);
+                assertAnalyzesTo(ws, input, output);
+            } finally {
+                ws.close();
+            }
+        }
+    }
+
+    private Analyzer newSerbianStemmerWithMemo(int memoSize, StemCache cache) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new LowerCaseFilter(tok);
+                ts = new SerbianStemmerTokenFilter(ts, memoSize, cache);
+                return new TokenStreamComponents(tok, ts);
+            }
+        };
+    }
+
+    @Test
+    public void testCustomRules() throws IOException {
+        // other rules bypass the stem table (which would give "dobr") and the node cache
+        SerbianStemmerRules rules = SerbianStemmerRules.parse(new BufferedReader(new StringReader(
+                "version 1\n[stop_words]\n[transformations]\n[word_rules]\n.+\tu\n")), "test");
+        LjubesicPandzicStemmer stemmer = new LjubesicPandzicStemmer(rules);
+        for (int memoSize : new int[] {0, 1024}) {
+            try (Analyzer ws = new Analyzer() {
+                @Override
+                protected TokenStreamComponents createComponents(String fieldName) {
+                    Tokenizer tok = new WhitespaceTokenizer();
+                    return new TokenStreamComponents(tok, new SerbianStemmerTokenFilter(tok, stemmer, memoSize));
+                }
+            }) {
+                assertAnalyzesTo(ws, "dobro došli na Википедију", new String[] {"dobro", "došli", "na", "Vikipedij"});
+            }
+        }
+    }
+
+    @Test
+    public void testPreserveOriginal() throws IOException {
+        // the original follows its stem at the same position, unless they are the same
+        String input = "Добро дошли на Википедију";
+        StemCache cache = StemCache.create(1 << 20);
+        for (int memoSize : new int[] {0, 1024}) {
+            try (Analyzer ws = newPreservingStemmer(memoSize, cache)) {
+                for (int i = 0; i < 2; i++) {
+                    assertTokenStreamContents(
+                            ws.tokenStream("", input),
+                            new String[] {"dobr", "dobro", "došl", "došli", "na", "vikipedij", "vikipediju"},
+                            new int[] {0, 0, 6, 6, 12, 15, 15}, // start offsets
+                            new int[] {5, 5, 11, 11, 14, 25, 25}, // end offsets
+                            null, // types, not supported
+                            new int[] {1, 0, 1, 0, 1, 1, 0}, // pos increments
+                            null, // pos size (unsupported)
+                            25, // last offset
+                            null, // keywordAtts, (unsupported)
+                            true);
+                }
+            }
+        }
+    }
+
+    private Analyzer newPreservingStemmer(int memoSize, StemCache cache) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new LowerCaseFilter(tok);
+                ts = new SerbianStemmerTokenFilter(ts, memoSize, cache, true);
+                return new TokenStreamComponents(tok, ts);
+            }
+        };
+    }
+
+    @Test
+    public void testStripAccents() throws IOException {
+        // the original is converted to Latin and stripped of its accents, too
+        for (int memoSize : new int[] {0, 1024}) {
+            try (Analyzer ws = new Analyzer() {
+                @Override
+                protected TokenStreamComponents createComponents(String fieldName) {
+                    Tokenizer tok = new WhitespaceTokenizer();
+                    TokenStream ts = new LowerCaseFilter(tok);
+                    ts = new SerbianStemmerTokenFilter(ts, memoSize, null, true, true, null);
+                    return new TokenStreamComponents(tok, ts);
+                }
+            }) {
+                assertAnalyzesTo(ws, "Добро до̏шли на Википе́дију",
+                        new String[] {"dobr", "dobro", "došl", "došli", "na", "vikipedij", "vikipediju"},
+                        new int[] {1, 0, 1, 0, 1, 1, 0});
+            }
+        }
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        AnalysisStats stats = new AnalysisStats("serbian_stemmer");
+        FilterStats filterStats = stats.forFilter("wiki", "stemmer");
+        // the stemmer is passed in so that the stem table doesn't answer for the memo
+        LjubesicPandzicStemmer stemmer = new LjubesicPandzicStemmer();
+        try (Analyzer ws = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tok = new WhitespaceTokenizer();
+                TokenStream ts = new LowerCaseFilter(tok);
+                ts = new SerbianStemmerTokenFilter(ts, stemmer, 1024, false, filterStats);
+                return new TokenStreamComponents(tok, ts);
+            }
+        }) {
+            // consumed by hand, as assertAnalyzesTo analyzes more than once
+            for (int i = 0; i < 16; i++) {
+                StringBuilder terms = new StringBuilder();
+                try (TokenStream ts = ws.tokenStream("", "Добро dobro dobro na")) {
+                    CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+                    ts.reset();
+                    while (ts.incrementToken()) {
+                        terms.append(terms.length() == 0 ? "" : " ").append(termAtt);
+                    }
+                    ts.end();
+                }
+                assertEquals("dobr dobr dobr na", terms.toString());
+            }
+        }
+        FilterStatsSnapshot snapshot = stats.snapshot().get(0);
+        assertEquals(64, snapshot.tokens());
+        // only "na" is left as it is
+        assertEquals(48, snapshot.changed());
+        // every "добро" counts as converted, even when its stem comes from the memo
+        assertEquals(16, snapshot.transliterated());
+        // the memo is kept across reuse, so only the first three words are missed
+        assertEquals(61, snapshot.cacheHits());
+        assertEquals(3, snapshot.cacheMisses());
+        assertEquals(1, snapshot.timedTokens());
+    }
 }
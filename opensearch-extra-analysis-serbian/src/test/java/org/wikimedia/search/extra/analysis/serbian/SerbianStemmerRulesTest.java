@@ -0,0 +1,109 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.junit.Test;
+
+public class SerbianStemmerRulesTest {
+
+    private static SerbianStemmerRules parse(String text) throws IOException {
+        return SerbianStemmerRules.parse(new BufferedReader(new StringReader(text)), "test");
+    }
+
+    @Test
+    public void testCompiledRulesMatchRuleFile() throws IOException {
+        SerbianStemmerRules parsed = SerbianStemmerRules.parse(Paths.get("src/main/rules/ljubesic_pandzic_rules.txt"));
+        ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        parsed.write(out);
+        SerbianStemmerRules read = SerbianStemmerRules.read(out.toDataInput());
+
+        // the defaults come from the compiled resource
+        LjubesicPandzicStemmer[] stemmers = {
+            new LjubesicPandzicStemmer(parsed),
+            new LjubesicPandzicStemmer(read),
+            new LjubesicPandzicStemmer()
+        };
+        String alphabet = "aeioujklmnrstvgzšžčćđабвгдђељњџ";
+        String[] endings = {"ima", "om", "ama", "ovima", "ijega", "jući", "smo", "anje", "nijega", "ajući",
+            "lozima", "jacima", "izama", "ekata", ""};
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(7);
+            for (int j = 0; j < len; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String word = sb.append(endings[random.nextInt(endings.length)]).toString();
+            String stem = stemmers[0].stemWord(word);
+            for (LjubesicPandzicStemmer stemmer : stemmers) {
+                assertThat(stemmer.stemWord(word)).as(word).isEqualTo(stem);
+            }
+        }
+        for (String stopWord : new String[] {"biti", "MOŽEŠ", "bijahu"}) {
+            for (LjubesicPandzicStemmer stemmer : stemmers) {
+                assertThat(stemmer.stemWord(stopWord)).isEqualTo(stopWord);
+            }
+        }
+    }
+
+    @Test
+    public void testCustomRules() throws IOException {
+        SerbianStemmerRules rules = parse("version 1\n"
+                + "[stop_words]\n"
+                + "knjigama\n"
+                + "[transformations]\n"
+                + "ovima\tov\n"
+                + "ps\tpas\n"
+                + "[word_rules]\n"
+                + ".+(k|g)\tama|e\n"
+                + ".+\tu\n");
+        LjubesicPandzicStemmer stemmer = new LjubesicPandzicStemmer(rules);
+        assertThat(stemmer.stemWord("knjigama")).isEqualTo("knjigama");
+        assertThat(stemmer.stemWord("KNJIGAMA")).isEqualTo("KNJIGAMA");
+        assertThat(stemmer.stemWord("rukama")).isEqualTo("ruk");
+        assertThat(stemmer.stemWord("sobama")).isEqualTo("sobama");
+        assertThat(stemmer.stemWord("sobu")).isEqualTo("sob");
+        assertThat(stemmer.stemWord("gradovima")).isEqualTo("gradov");
+        assertThat(stemmer.stemWord("Књиге")).isEqualTo("Knjig");
+        // a transformation without a vowel applies to words without one
+        assertThat(stemmer.stemWord("ps")).isEqualTo("pas");
+        // the shipped rules are unaffected
+        assertThat(new LjubesicPandzicStemmer().stemWord("sobama")).isEqualTo("sob");
+    }
+
+    @Test
+    public void testEmptySuffixTransformation() throws IOException {
+        SerbianStemmerRules rules = parse("version 1\n"
+                + "[stop_words]\n"
+                + "[transformations]\n"
+                + "\tx\n"
+                + "ama\ta\n"
+                + "[word_rules]\n"
+                + ".+\ta\n");
+        LjubesicPandzicStemmer stemmer = new LjubesicPandzicStemmer(rules);
+        // the empty suffix transforms every word that no longer suffix does
+        assertThat(stemmer.stemWord("grad")).isEqualTo("gradx");
+        assertThat(stemmer.stemWord("Град")).isEqualTo("Gradx");
+        assertThat(stemmer.stemWord("sobama")).isEqualTo("sob");
+    }
+
+    @Test
+    public void testMalformedRules() {
+        assertThatThrownBy(() -> parse("version 2\n[stop_words]\n[transformations]\n[word_rules]\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse("version 1\n[stop_words]\n[transformations]\n[word_rules]\n.+k\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse("version 1\n[stop_words]\n[transformations]\n[word_rules]\nk\ta\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse("version 1\n[stop_words]\n[transformations]\na\tb\na\tc\n[word_rules]\n"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttributeImpl;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.junit.Test;
+
+public class StemTableTest {
+
+    private final CharTermAttribute termAtt = new CharTermAttributeImpl();
+
+    /* The stem of the word from the table, or null if it isn't there. */
+    private String lookup(StemTable.Reader reader, String word) throws IOException {
+        termAtt.setEmpty().append(word);
+        if (!reader.replaceWithStem(termAtt)) {
+            assertThat(termAtt.toString()).isEqualTo(word);
+            return null;
+        }
+        return termAtt.toString();
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        SortedMap<String, String> wordStems = new TreeMap<>();
+        wordStems.put("vikipediju", "vikipedij");
+        wordStems.put("vikipedija", "vikipedij");
+        wordStems.put("Википедију", "Vikipedij");
+        wordStems.put("џџџ", "dždždž");
+        StemTable table = StemTable.build(wordStems);
+
+        // round trip through the serialized form
+        ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        table.write(out);
+        StemTable.Reader reader = StemTable.read(out.toDataInput()).newReader();
+
+        assertThat(lookup(reader, "vikipediju")).isEqualTo("vikipedij");
+        assertThat(lookup(reader, "vikipedija")).isEqualTo("vikipedij");
+        assertThat(lookup(reader, "Википедију")).isEqualTo("Vikipedij");
+        assertThat(lookup(reader, "џџџ")).isEqualTo("dždždž");
+        assertThat(lookup(reader, "vikipedij")).isNull(); // prefix
+        assertThat(lookup(reader, "vikipedijom")).isNull(); // extension
+        assertThat(lookup(reader, "Vikipediju")).isNull(); // case matters
+        assertThat(lookup(reader, "")).isNull();
+    }
+
+    @Test
+    public void testToCyrillic() {
+        assertThat(StemTable.toCyrillic("ljubljana")).isEqualTo("љубљана");
+        assertThat(StemTable.toCyrillic("njegova")).isEqualTo("његова");
+        assertThat(StemTable.toCyrillic("džep")).isEqualTo("џеп");
+        assertThat(StemTable.toCyrillic("čćđšž")).isEqualTo("чћђшж");
+    }
+
+    @Test
+    public void testShippedTableMatchesStemmer() throws IOException {
+        StemTable table = StemTable.load();
+        assertThat(table).as("stem table is built in process-classes").isNotNull();
+        StemTable.Reader reader = table.newReader();
+        LjubesicPandzicStemmer stemmer = new LjubesicPandzicStemmer();
+
+        List<String> lines = Files.readAllLines(Paths.get("src/main/stem-table/common_words.txt"), UTF_8);
+        int words = 0;
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String capitalized = Character.toUpperCase(line.charAt(0)) + line.substring(1);
+            for (String word : new String[] {line, capitalized, StemTable.toCyrillic(line)}) {
+                assertThat(lookup(reader, word)).as(word).isEqualTo(stemmer.stemWord(word));
+            }
+            words++;
+        }
+        assertThat(words).isGreaterThan(1000);
+        // words that aren't in the table
+        assertThat(lookup(reader, "abdominalni")).isNull();
+        assertThat(lookup(reader, "ђуричковић")).isNull();
+    }
+}
@@ -0,0 +1,140 @@
+package org.wikimedia.search.extra.analysis.serbian;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class WordRuleAutomatonTest {
+
+    private static final WordRuleAutomaton.StemCondition ANY_STEM = (buffer, length) -> true;
+
+    private static int stemLength(WordRuleAutomaton automaton, String word,
+            WordRuleAutomaton.StemCondition condition) {
+        return automaton.stemLength(word.toCharArray(), word.length(), condition);
+    }
+
+    /* First-match-wins over the regexes, as the stemmer used to do it.
+     */
+    private static int regexStemLength(List<Pattern> patterns, String word,
+            WordRuleAutomaton.StemCondition condition) {
+        for (Pattern pattern : patterns) {
+            Matcher matcher = pattern.matcher(word);
+            if (matcher.matches()) {
+                String stem = matcher.group(1);
+                if (condition.accept(stem.toCharArray(), stem.length())) return stem.length();
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testFirstRuleWins() {
+        WordRuleAutomaton automaton = new WordRuleAutomaton(
+            asList(".+k", ".+"), asList("om|a", "ama|om|a"));
+        assertThat(stemLength(automaton, "vukom", ANY_STEM)).isEqualTo(3);
+        assertThat(stemLength(automaton, "ženama", ANY_STEM)).isEqualTo(5);
+        assertThat(stemLength(automaton, "vuk", ANY_STEM)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testLongestPrefixWins() {
+        // the regex prefers the longest .+, i.e., the shortest ending
+        WordRuleAutomaton automaton = new WordRuleAutomaton(asList(".+", ".+m"), asList("ama|a|", "ama|a"));
+        assertThat(stemLength(automaton, "ženama", ANY_STEM)).isEqualTo(6);
+        WordRuleAutomaton.StemCondition notWholeWord = (buffer, length) -> length < 6;
+        assertThat(stemLength(automaton, "ženama", notWholeWord)).isEqualTo(5);
+    }
+
+    @Test
+    public void testNeedsOneCharBeforeRule() {
+        WordRuleAutomaton automaton = new WordRuleAutomaton(asList(".+ov"), asList("ima"));
+        assertThat(stemLength(automaton, "ovima", ANY_STEM)).isEqualTo(-1);
+        assertThat(stemLength(automaton, "rovima", ANY_STEM)).isEqualTo(3);
+    }
+
+    @Test
+    public void testRejectedStemFallsThroughToNextRule() {
+        WordRuleAutomaton automaton = new WordRuleAutomaton(
+            asList(".+", ".+"), asList("a", "ka"));
+        WordRuleAutomaton.StemCondition notEndingInK = (buffer, length) -> buffer[length - 1] != 'k';
+        assertThat(stemLength(automaton, "ruka", notEndingInK)).isEqualTo(2);
+        // a rejected rule is not retried with a shorter prefix
+        WordRuleAutomaton sameRule = new WordRuleAutomaton(asList(".+"), asList("a|ka"));
+        assertThat(stemLength(sameRule, "ruka", notEndingInK)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testCharacterClasses() {
+        WordRuleAutomaton automaton = new WordRuleAutomaton(
+            asList(".+[^eo]g", ".+(s|š)k"), asList("om|a", "ima|i"));
+        assertThat(stemLength(automaton, "drugom", ANY_STEM)).isEqualTo(4);
+        assertThat(stemLength(automaton, "bregom", ANY_STEM)).isEqualTo(-1);
+        assertThat(stemLength(automaton, "ДРУgom", ANY_STEM)).isEqualTo(4);
+        assertThat(stemLength(automaton, "srpskima", ANY_STEM)).isEqualTo(5);
+        assertThat(stemLength(automaton, "češki", ANY_STEM)).isEqualTo(4);
+    }
+
+    @Test
+    public void testUnsupportedSyntax() {
+        assertThatThrownBy(() -> new WordRuleAutomaton(asList("k"), asList("a")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new WordRuleAutomaton(asList(".+k*"), asList("a")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new WordRuleAutomaton(asList(".+(k"), asList("a")))
+            .isInstanceOf(IllegalArgumentException.class);
+        // class syntax beyond a list of chars is rejected, not taken as literal chars
+        for (String rule : new String[] {".+[a-z]", ".+[\\w]", ".+[ab[cd]]", ".+[a-z&&[^k]]", ".+[ab&&b]",
+                ".+[ab^]", ".+[^^a]", ".+[]", ".+[^]", ".+[ab"}) {
+            assertThatThrownBy(() -> new WordRuleAutomaton(asList(rule), asList("a")))
+                .as(rule)
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThatThrownBy(() -> new WordRuleAutomaton(asList(".+k"), asList("[^a-z]")))
+            .isInstanceOf(IllegalArgumentException.class);
+        // a single & is a literal, as in java.util.regex
+        WordRuleAutomaton ampersand = new WordRuleAutomaton(asList(".+[k&]"), asList("a"));
+        assertThat(stemLength(ampersand, "ru&a", ANY_STEM)).isEqualTo(3);
+        assertThat(stemLength(ampersand, "ruka", ANY_STEM)).isEqualTo(3);
+    }
+
+    @Test
+    public void testStemmerRulesMatchRegexes() {
+        WordRuleAutomaton automaton = SerbianStemmerRules.defaults().wordRules;
+        List<Pattern> patterns = automaton.toPatterns();
+        WordRuleAutomaton.StemCondition hasVowel = (buffer, length) -> {
+            for (int i = 0; i < length; i++) {
+                if ("aeiou".indexOf(buffer[i]) >= 0) return true;
+            }
+            return false;
+        };
+
+        String alphabet = "aeioujklmnrstvgzšžčćđ";
+        String[] endings = {"ima", "om", "a", "e", "i", "u", "o", "ama", "ovima", "ijega", "ući",
+            "jući", "smo", "ste", "li", "la", "lo", "anje", "enje", "nijega", "ajući", ""};
+        String[] odd = {"\n", " ", "𝐀", "ŠK", "-", "1"};
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(8);
+            for (int j = 0; j < len; j++) {
+                if (random.nextInt(40) == 0) {
+                    sb.append(odd[random.nextInt(odd.length)]);
+                } else {
+                    sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+            }
+            sb.append(endings[random.nextInt(endings.length)]);
+            String word = sb.toString();
+            assertThat(stemLength(automaton, word, hasVowel))
+                .as(word)
+                .isEqualTo(regexStemLength(patterns, word, hasVowel));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line arguments: positional arguments, and {@code --name value} options.
+ */
+final class Args {
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    /**
+     * @param allowed the names of the options, without the leading dashes
+     * @throws IllegalArgumentException on an unknown option, or one without a value
+     */
+    Args(String[] args, Set<String> allowed) {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                positional.add(args[i]);
+                continue;
+            }
+            String name = args[i].substring(2);
+            if (!allowed.contains(name)) {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value for " + args[i]);
+            }
+            options.put(name, args[++i]);
+        }
+    }
+
+    List<String> positional() {
+        return Collections.unmodifiableList(positional);
+    }
+
+    String get(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    Path path(String name) {
+        String value = options.get(name);
+        return value == null ? null : Paths.get(value);
+    }
+
+    int intValue(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 1) throw new IllegalArgumentException("--" + name + " must be positive but was " + value);
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number but was " + value, e);
+        }
+    }
+}
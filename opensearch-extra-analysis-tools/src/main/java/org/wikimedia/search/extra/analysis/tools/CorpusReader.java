@@ -0,0 +1,193 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * Reads the tokens of a large UTF-8 text file, such as a plain text Wikipedia dump, and counts
+ * them by type.
+ *
+ * <p>The file is memory mapped a chunk at a time. Chunks end at whitespace, so that no token
+ * is split, and are tokenized (standard tokenizer, then lowercasing, as in front of the
+ * stemmers in the plugins) on a pool of threads. Each chunk's counts are merged into a
+ * {@link TypeCounts}, and at most two chunks per thread are in flight, so memory is bounded
+ * by the chunk size, the number of threads and the {@code TypeCounts} limit, not by the size
+ * of the file.
+ *
+ * <p>The {@code <doc ...>} and {@code </doc>} lines that wrap articles in plain text dumps are
+ * skipped.
+ */
+final class CorpusReader {
+
+    private static final Analyzer ANALYZER = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new LowerCaseFilter(tokenizer);
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    };
+
+    private final Path input;
+    private final int chunkSize;
+    private final int threads;
+    private long bytes;
+    private long tokens;
+
+    /**
+     * @param chunkSize the size in bytes of the chunks of the file to map and tokenize at once
+     * @param threads the number of threads to tokenize on
+     */
+    CorpusReader(Path input, int chunkSize, int threads) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize);
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.input = input;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Count the types of the tokens in the file.
+     */
+    void countTypes(TypeCounts counts) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Map<String, long[]>>> pending = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+                if (start + chunk.limit() < size) chunk.limit(chunkEnd(chunk));
+                start += chunk.limit();
+                if (pending.size() >= 2 * threads) merge(pending.poll(), counts);
+                pending.add(executor.submit(() -> countChunk(chunk)));
+            }
+            while (!pending.isEmpty()) {
+                merge(pending.poll(), counts);
+            }
+            bytes += size;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Number of bytes read so far. */
+    long bytes() {
+        return bytes;
+    }
+
+    /** Number of tokens read so far. */
+    long tokens() {
+        return tokens;
+    }
+
+    private void merge(Future<Map<String, long[]>> future, TypeCounts counts) throws IOException {
+        Map<String, long[]> chunkCounts;
+        try {
+            chunkCounts = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + input, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException("Cannot read " + input, e.getCause());
+        }
+        for (long[] count : chunkCounts.values()) {
+            tokens += count[0];
+        }
+        counts.addAll(chunkCounts);
+    }
+
+    /*
+     * Where to end a chunk that isn't the last one: after its last line break, so that dump
+     * markup lines stay whole; failing that, after its last space or tab, so that no token is
+     * split; failing that, before its last UTF-8 lead byte, so that no char is split.
+     */
+    static int chunkEnd(ByteBuffer chunk) {
+        int limit = chunk.limit();
+        for (int i = limit - 1; i > 0; i--) {
+            if (chunk.get(i) == '\n') return i + 1;
+        }
+        for (int i = limit - 1; i > 0; i--) {
+            byte b = chunk.get(i);
+            if (b == ' ' || b == '\t' || b == '\r') return i + 1;
+        }
+        for (int i = limit - 1; i > 0; i--) {
+            if ((chunk.get(i) & 0xC0) != 0x80) return i;
+        }
+        return limit;
+    }
+
+    static Map<String, long[]> countChunk(ByteBuffer chunk) {
+        Map<String, long[]> counts = new HashMap<>();
+        try {
+            CharBuffer text = UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(chunk);
+            skipDocMarkup(text);
+            try (TokenStream stream = ANALYZER.tokenStream("", new CharArrayReader(text.array(), 0, text.limit()))) {
+                CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+                stream.reset();
+                while (stream.incrementToken()) {
+                    long[] count = counts.computeIfAbsent(termAtt.toString(), k -> new long[1]);
+                    count[0]++;
+                }
+                stream.end();
+            }
+        } catch (CharacterCodingException e) {
+            throw new IllegalStateException("Decoding with replacement can't fail", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counts;
+    }
+
+    /* Blank out the <doc ...> and </doc> lines of plain text dumps. */
+    private static void skipDocMarkup(CharBuffer text) {
+        char[] chars = text.array();
+        int limit = text.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chars[lineEnd] != '\n') lineEnd++;
+            if (startsWith(chars, lineStart, lineEnd, "<doc ") || startsWith(chars, lineStart, lineEnd, "</doc>")) {
+                for (int i = lineStart; i < lineEnd; i++) chars[i] = ' ';
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private static boolean startsWith(char[] chars, int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[from + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+}
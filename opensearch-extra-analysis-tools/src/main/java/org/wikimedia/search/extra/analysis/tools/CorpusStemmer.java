@@ -0,0 +1,145 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import org.wikimedia.search.extra.analysis.common.BatchStemmer;
+import org.wikimedia.search.extra.analysis.common.InPlaceStemmer;
+
+/**
+ * Runs a large UTF-8 text file, such as a plain text Wikipedia dump, through a stemmer and
+ * writes a frequency table of its tokens and their stems, for stemmer analysis. Usage:
+ * <pre>
+ *   CorpusStemmer &lt;serbian|esperanto&gt; &lt;input&gt; &lt;output&gt; [options]
+ * </pre>
+ *
+ * <p>The output has a line per distinct token, sorted by token: the token, its stem and its
+ * count, separated by tabs. The tokens are those of the standard tokenizer, lowercased.
+ *
+ * <p>Options:
+ * <ul>
+ *   <li>{@code --rules <file>}: a rule file to stem with instead of the shipped rules
+ *   <li>{@code --threads <n>}: the number of threads (default: the number of cores)
+ *   <li>{@code --chunk-mb <n>}: the size of the chunks of the input to read at once (default 16)
+ *   <li>{@code --max-types <n>}: the number of distinct tokens to hold in memory before
+ *     writing them to a temporary file (default 2000000)
+ *   <li>{@code --min-count <n>}: leave out tokens seen fewer times (default 1)
+ *   <li>{@code --temp-dir <dir>}: where to write temporary files (default: the system's)
+ * </ul>
+ */
+public final class CorpusStemmer {
+
+    static final int DEFAULT_CHUNK_MB = 16;
+    static final int DEFAULT_MAX_TYPES = 2_000_000;
+
+    /* Types stemmed at once on the pool while writing the table. */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private CorpusStemmer() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args;
+        try {
+            args = new Args(argv, new HashSet<>(Arrays.asList(
+                    "rules", "threads", "chunk-mb", "max-types", "min-count", "temp-dir")));
+            if (args.positional().size() != 3) {
+                throw new IllegalArgumentException("Expected a language, an input and an output");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: CorpusStemmer <serbian|esperanto> <input> <output> [--rules <file>]"
+                    + " [--threads <n>] [--chunk-mb <n>] [--max-types <n>] [--min-count <n>] [--temp-dir <dir>]");
+            throw e;
+        }
+        List<String> positional = args.positional();
+        Language language = Language.forName(positional.get(0));
+        InPlaceStemmer stemmer = language.stemmer(args.path("rules"));
+        int threads = args.intValue("threads", Runtime.getRuntime().availableProcessors());
+        CorpusReader reader = new CorpusReader(Paths.get(positional.get(1)),
+                args.intValue("chunk-mb", DEFAULT_CHUNK_MB) << 20, threads);
+        Path tempDir = Paths.get(args.get("temp-dir", System.getProperty("java.io.tmpdir")));
+
+        long start = System.nanoTime();
+        try (TypeCounts counts = new TypeCounts(args.intValue("max-types", DEFAULT_MAX_TYPES), tempDir)) {
+            reader.countTypes(counts);
+            long types = stem(counts, stemmer, threads, args.intValue("min-count", 1), Paths.get(positional.get(2)));
+            report(System.err, reader, types, counts.runs(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Write the table of the counted types and their stems.
+     *
+     * @return the number of types written
+     */
+    static long stem(TypeCounts counts, InPlaceStemmer stemmer, int threads, int minCount, Path output)
+            throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (BufferedWriter writer = Files.newBufferedWriter(output, UTF_8)) {
+            TableWriter table = new TableWriter(stemmer, pool, writer);
+            counts.forEachSorted((type, count) -> {
+                if (count >= minCount) table.add(type, count);
+            });
+            table.flush();
+            return table.written;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void report(PrintStream out, CorpusReader reader, long types, int runs, long nanos) {
+        double seconds = nanos / 1e9;
+        out.printf(Locale.ROOT, "%,d bytes, %,d tokens, %,d types written (%d temporary runs) in %.1fs: %,.1f MB/s%n",
+                reader.bytes(), reader.tokens(), types, runs, seconds, reader.bytes() / seconds / (1 << 20));
+    }
+
+    /* Stems the types a block at a time, in parallel, and writes them out in order. */
+    private static final class TableWriter {
+        private final InPlaceStemmer stemmer;
+        private final ForkJoinPool pool;
+        private final BufferedWriter writer;
+        private final String[] types = new String[BLOCK_SIZE];
+        private final long[] counts = new long[BLOCK_SIZE];
+        private final String[] stems = new String[BLOCK_SIZE];
+        private int size;
+        long written;
+
+        TableWriter(InPlaceStemmer stemmer, ForkJoinPool pool, BufferedWriter writer) {
+            this.stemmer = stemmer;
+            this.pool = pool;
+            this.writer = writer;
+        }
+
+        void add(String type, long count) throws IOException {
+            types[size] = type;
+            counts[size] = count;
+            if (++size == BLOCK_SIZE) flush();
+        }
+
+        void flush() throws IOException {
+            String[] block = size == BLOCK_SIZE ? types : Arrays.copyOf(types, size);
+            BatchStemmer.stemAll(stemmer, block, stems, pool);
+            for (int i = 0; i < size; i++) {
+                writer.write(types[i]);
+                writer.write('\t');
+                writer.write(stems[i]);
+                writer.write('\t');
+                writer.write(Long.toString(counts[i]));
+                writer.write('\n');
+            }
+            written += size;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.wikimedia.search.extra.analysis.common.InPlaceStemmer;
+import org.wikimedia.search.extra.analysis.esperanto.EsperantoStemmer;
+import org.wikimedia.search.extra.analysis.esperanto.EsperantoStemmerRules;
+import org.wikimedia.search.extra.analysis.serbian.LjubesicPandzicStemmer;
+import org.wikimedia.search.extra.analysis.serbian.SerbianStemmerRules;
+
+/**
+ * The stemmers the tools can run, by the name of their token filter.
+ */
+enum Language {
+    SERBIAN("serbian_stemmer", LjubesicPandzicStemmer.class.getName()) {
+        @Override
+        InPlaceStemmer stemmer(Path rules) throws IOException {
+            return rules == null ? new LjubesicPandzicStemmer()
+                    : new LjubesicPandzicStemmer(SerbianStemmerRules.parse(rules));
+        }
+    },
+    ESPERANTO("esperanto_stemmer", EsperantoStemmer.class.getName()) {
+        @Override
+        InPlaceStemmer stemmer(Path rules) throws IOException {
+            return rules == null ? new EsperantoStemmer()
+                    : new EsperantoStemmer(EsperantoStemmerRules.parse(rules));
+        }
+    };
+
+    final String filterName;
+    /** The stemmer class, with a public no-argument constructor and {@code String stemWord(String)}. */
+    final String stemmerClass;
+
+    Language(String filterName, String stemmerClass) {
+        this.filterName = filterName;
+        this.stemmerClass = stemmerClass;
+    }
+
+    /**
+     * The stemmer with the given rule file, or with the shipped rules if it is null.
+     */
+    abstract InPlaceStemmer stemmer(Path rules) throws IOException;
+
+    /**
+     * The language with the given name ("serbian") or filter name ("serbian_stemmer").
+     *
+     * @throws IllegalArgumentException if there is no such language
+     */
+    static Language forName(String name) {
+        for (Language language : values()) {
+            if (language.name().toLowerCase(Locale.ROOT).equals(name) || language.filterName.equals(name)) {
+                return language;
+            }
+        }
+        throw new IllegalArgumentException("Unknown language [" + name + "], expected serbian or esperanto");
+    }
+}
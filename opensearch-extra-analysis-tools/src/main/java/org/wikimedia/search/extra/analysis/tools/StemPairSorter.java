@@ -0,0 +1,188 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts (stem, other stem, type, count) entries in bounded memory: once {@code maxEntries} are
+ * held, they are sorted and written to a temporary file (a run), and the runs are merged when
+ * the entries are read back. Entries are sorted by stem, then other stem, then type.
+ *
+ * <p>Not thread safe.
+ */
+final class StemPairSorter implements Closeable {
+
+    /** One type, with its stem by one stemmer and its stem by the other. */
+    static final class Entry {
+        final String stem;
+        final String otherStem;
+        final String type;
+        final long count;
+
+        Entry(String stem, String otherStem, String type, long count) {
+            this.stem = stem;
+            this.otherStem = otherStem;
+            this.type = type;
+            this.count = count;
+        }
+    }
+
+    /** Receives entries in order. */
+    interface Visitor {
+        void visit(Entry entry) throws IOException;
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry, String>comparing(e -> e.stem)
+            .thenComparing(e -> e.otherStem)
+            .thenComparing(e -> e.type);
+
+    private final int maxEntries;
+    private final Path tempDir;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param maxEntries the number of entries to hold in memory before writing them to a run
+     * @param tempDir where to write the runs
+     */
+    StemPairSorter(int maxEntries, Path tempDir) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive but was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.tempDir = tempDir;
+    }
+
+    void add(String stem, String otherStem, String type, long count) throws IOException {
+        entries.add(new Entry(stem, otherStem, type, count));
+        if (entries.size() >= maxEntries) spill();
+    }
+
+    /** Number of runs written so far. */
+    int runs() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        entries.sort(ORDER);
+        Path run = Files.createTempFile(tempDir, "stems-", ".run");
+        runs.add(run);
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (Entry entry : entries) {
+                writeString(out, entry.stem);
+                writeString(out, entry.otherStem);
+                writeString(out, entry.type);
+                out.writeLong(entry.count);
+            }
+        }
+        entries.clear();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Visit all the entries in order, merging the runs.
+     */
+    void forEachSorted(Visitor visitor) throws IOException {
+        entries.sort(ORDER);
+        PriorityQueue<Source> queue = new PriorityQueue<>((a, b) -> ORDER.compare(a.entry, b.entry));
+        List<RunSource> open = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                RunSource source = new RunSource(run);
+                open.add(source);
+                if (source.next()) queue.add(source);
+            }
+            Source memory = new MemorySource(entries);
+            if (memory.next()) queue.add(memory);
+            while (!queue.isEmpty()) {
+                Source source = queue.poll();
+                visitor.visit(source.entry);
+                if (source.next()) queue.add(source);
+            }
+        } finally {
+            for (RunSource source : open) {
+                source.in.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        entries.clear();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    /* Entries in order. */
+    private abstract static class Source {
+        Entry entry;
+
+        /* Move to the next entry, returning false if there are no more. */
+        abstract boolean next() throws IOException;
+    }
+
+    private static final class MemorySource extends Source {
+        private final List<Entry> entries;
+        private int next;
+
+        MemorySource(List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        boolean next() {
+            if (next == entries.size()) return false;
+            entry = entries.get(next++);
+            return true;
+        }
+    }
+
+    private static final class RunSource extends Source {
+        final DataInputStream in;
+
+        RunSource(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            String stem;
+            try {
+                stem = readString(in, in.readInt());
+            } catch (EOFException e) {
+                return false;
+            }
+            String otherStem = readString(in, in.readInt());
+            String type = readString(in, in.readInt());
+            entry = new Entry(stem, otherStem, type, in.readLong());
+            return true;
+        }
+
+        private static String readString(DataInputStream in, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares two versions of a stemmer over a corpus, to see how a change to the stemmer moves
+ * its conflation groups (the tokens that share a stem, and so match each other) before the
+ * change is deployed. Usage:
+ * <pre>
+ *   StemmerDiff &lt;serbian|esperanto&gt; &lt;input&gt; &lt;report&gt; [options]
+ * </pre>
+ *
+ * <p>The report counts the types (distinct tokens) whose stem changed, the conflation groups
+ * that were split and merged, and the change in the number of distinct stems, which is the
+ * number of terms the stemmed field adds to the index. It lists the largest split and merged
+ * groups, with their types.
+ *
+ * <p>The types are counted as by {@link CorpusStemmer}, then stemmed by both versions a
+ * block at a time, in parallel, and sorted by their old and by their new stems, both in
+ * bounded memory, so that each group can be read in a single pass.
+ *
+ * <p>Options:
+ * <ul>
+ *   <li>{@code --old <file>}, {@code --new <file>}: a rule file for the old or new version
+ *     (default: the shipped rules)
+ *   <li>{@code --old-classpath <jars>}, {@code --new-classpath <jars>}: the jars of another
+ *     build of the plugin to take the old or new version from, instead of this build
+ *   <li>{@code --format <text|table>}: whether the input is text, or a table written by
+ *     {@link CorpusStemmer}, whose tokens and counts are used (default text)
+ *   <li>{@code --examples <n>}: the number of split and merged groups to list (default 100)
+ *   <li>{@code --threads}, {@code --chunk-mb}, {@code --max-types}, {@code --temp-dir}: as
+ *     for {@link CorpusStemmer}; {@code --max-types} also bounds the entries sorted in memory
+ * </ul>
+ */
+public final class StemmerDiff {
+
+    static final int DEFAULT_EXAMPLES = 100;
+
+    /* Types stemmed at once on the pool. */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /* Types listed for each new stem of a split group, or old stem of a merged one. */
+    private static final int TYPES_PER_STEM = 5;
+
+    private StemmerDiff() {
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args;
+        try {
+            args = new Args(argv, new HashSet<>(Arrays.asList("old", "new", "old-classpath", "new-classpath",
+                    "format", "examples", "threads", "chunk-mb", "max-types", "temp-dir")));
+            if (args.positional().size() != 3) {
+                throw new IllegalArgumentException("Expected a language, an input and a report");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: StemmerDiff <serbian|esperanto> <input> <report>"
+                    + " [--old <file> | --old-classpath <jars>] [--new <file> | --new-classpath <jars>]"
+                    + " [--format <text|table>] [--examples <n>] [--threads <n>] [--chunk-mb <n>]"
+                    + " [--max-types <n>] [--temp-dir <dir>]");
+            throw e;
+        }
+        List<String> positional = args.positional();
+        Language language = Language.forName(positional.get(0));
+        StemmerVersion oldVersion = version(args, language, "old");
+        StemmerVersion newVersion = version(args, language, "new");
+        int threads = args.intValue("threads", Runtime.getRuntime().availableProcessors());
+        int maxTypes = args.intValue("max-types", CorpusStemmer.DEFAULT_MAX_TYPES);
+        Path input = Paths.get(positional.get(1));
+        Path tempDir = Paths.get(args.get("temp-dir", System.getProperty("java.io.tmpdir")));
+
+        long start = System.nanoTime();
+        try (TypeCounts counts = new TypeCounts(maxTypes, tempDir)) {
+            String format = args.get("format", "text");
+            if ("text".equals(format)) {
+                new CorpusReader(input, args.intValue("chunk-mb", CorpusStemmer.DEFAULT_CHUNK_MB) << 20, threads)
+                        .countTypes(counts);
+            } else if ("table".equals(format)) {
+                readTable(input, counts);
+            } else {
+                throw new IllegalArgumentException("--format must be text or table but was " + format);
+            }
+            Report report = diff(counts, oldVersion, newVersion, threads, maxTypes, tempDir,
+                    args.intValue("examples", DEFAULT_EXAMPLES));
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(positional.get(2)), UTF_8)) {
+                report.write(writer, language, oldVersion, newVersion);
+            }
+            report(System.err, report, System.nanoTime() - start);
+        }
+    }
+
+    private static StemmerVersion version(Args args, Language language, String side) throws IOException {
+        String classpath = args.get(side + "-classpath", null);
+        if (classpath == null) return StemmerVersion.withRules(language, args.path(side));
+        if (args.path(side) != null) {
+            throw new IllegalArgumentException("--" + side + " and --" + side + "-classpath can't be used together");
+        }
+        return StemmerVersion.fromClasspath(language, classpath);
+    }
+
+    /**
+     * Count the tokens of a table written by {@link CorpusStemmer}.
+     */
+    static void readTable(Path table, TypeCounts counts) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(table, UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException(
+                            table + " line " + lineNumber + ": expected token, stem and count");
+                }
+                try {
+                    counts.add(fields[0], Long.parseLong(fields[2]));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(table + " line " + lineNumber + ": invalid count", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stem the counted types with both versions and compare their conflation groups.
+     *
+     * @param maxEntries the number of types to sort in memory before writing them to a
+     *     temporary file
+     * @param examples the number of split and merged groups to keep
+     */
+    static Report diff(TypeCounts counts, StemmerVersion oldVersion, StemmerVersion newVersion, int threads,
+            int maxEntries, Path tempDir, int examples) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (StemPairSorter byOld = new StemPairSorter(maxEntries, tempDir);
+             StemPairSorter byNew = new StemPairSorter(maxEntries, tempDir)) {
+            Report report = new Report(examples);
+            PairWriter pairs = new PairWriter(oldVersion, newVersion, pool, report, byOld, byNew);
+            counts.forEachSorted(pairs::add);
+            pairs.flush();
+
+            GroupScanner split = new GroupScanner(examples);
+            byOld.forEachSorted(split);
+            split.finish();
+            GroupScanner merged = new GroupScanner(examples);
+            byNew.forEachSorted(merged);
+            merged.finish();
+            report.groups(split, merged, byOld.runs() + byNew.runs());
+            return report;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void report(PrintStream out, Report report, long nanos) {
+        out.printf(Locale.ROOT, "%,d types (%,d tokens) compared (%d temporary runs) in %.1fs%n",
+                report.types, report.tokens, report.runs, nanos / 1e9);
+    }
+
+    /* Stems the types a block at a time with both versions and adds them to the sorters. */
+    private static final class PairWriter {
+        private final StemmerVersion oldVersion;
+        private final StemmerVersion newVersion;
+        private final ForkJoinPool pool;
+        private final Report report;
+        private final StemPairSorter byOld;
+        private final StemPairSorter byNew;
+        private final String[] types = new String[BLOCK_SIZE];
+        private final long[] counts = new long[BLOCK_SIZE];
+        private final String[] oldStems = new String[BLOCK_SIZE];
+        private final String[] newStems = new String[BLOCK_SIZE];
+        private int size;
+
+        PairWriter(StemmerVersion oldVersion, StemmerVersion newVersion, ForkJoinPool pool, Report report,
+                StemPairSorter byOld, StemPairSorter byNew) {
+            this.oldVersion = oldVersion;
+            this.newVersion = newVersion;
+            this.pool = pool;
+            this.report = report;
+            this.byOld = byOld;
+            this.byNew = byNew;
+        }
+
+        void add(String type, long count) throws IOException {
+            types[size] = type;
+            counts[size] = count;
+            if (++size == BLOCK_SIZE) flush();
+        }
+
+        void flush() throws IOException {
+            String[] block = size == BLOCK_SIZE ? types : Arrays.copyOf(types, size);
+            oldVersion.stemAll(block, oldStems, pool);
+            newVersion.stemAll(block, newStems, pool);
+            for (int i = 0; i < size; i++) {
+                report.type(counts[i], oldStems[i].equals(newStems[i]));
+                byOld.add(oldStems[i], newStems[i], types[i], counts[i]);
+                byNew.add(newStems[i], oldStems[i], types[i], counts[i]);
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * Reads the entries grouped by stem, counting the groups, and the groups whose types have
+     * more than one other stem: split groups when grouped by old stem, merged groups when
+     * grouped by new stem.
+     */
+    static final class GroupScanner implements StemPairSorter.Visitor {
+        private final int examples;
+        private final PriorityQueue<Group> largest = new PriorityQueue<>(Comparator.comparingLong(g -> g.tokens));
+        private Group group;
+        long groups;
+        long changedGroups;
+        long changedTokens;
+
+        GroupScanner(int examples) {
+            this.examples = examples;
+        }
+
+        @Override
+        public void visit(StemPairSorter.Entry entry) {
+            if (group == null || !group.stem.equals(entry.stem)) {
+                finish();
+                group = new Group(entry.stem);
+                groups++;
+            }
+            group.add(entry);
+        }
+
+        void finish() {
+            if (group == null || group.branches.size() < 2) return;
+            changedGroups++;
+            changedTokens += group.tokens;
+            if (examples == 0) return;
+            if (largest.size() < examples) {
+                largest.add(group);
+            } else if (largest.peek().tokens < group.tokens) {
+                largest.poll();
+                largest.add(group);
+            }
+        }
+
+        /** The largest changed groups, largest first. */
+        List<Group> largest() {
+            List<Group> sorted = new ArrayList<>(largest);
+            sorted.sort(Comparator.comparingLong((Group g) -> g.tokens).reversed().thenComparing(g -> g.stem));
+            return sorted;
+        }
+    }
+
+    /** The types sharing a stem, by their other stem. */
+    static final class Group {
+        final String stem;
+        final List<Branch> branches = new ArrayList<>();
+        long tokens;
+
+        Group(String stem) {
+            this.stem = stem;
+        }
+
+        void add(StemPairSorter.Entry entry) {
+            Branch last = branches.isEmpty() ? null : branches.get(branches.size() - 1);
+            if (last == null || !last.stem.equals(entry.otherStem)) {
+                last = new Branch(entry.otherStem);
+                branches.add(last);
+            }
+            last.add(entry.type, entry.count);
+            tokens += entry.count;
+        }
+
+        /** "stem (tokens): other (tokens) type (count), ... | other ...", largest branches first. */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(stem).append(" (").append(tokens).append("): ");
+            List<Branch> sorted = new ArrayList<>(branches);
+            sorted.sort(Comparator.comparingLong((Branch b) -> b.tokens).reversed().thenComparing(b -> b.stem));
+            for (int i = 0; i < sorted.size(); i++) {
+                if (i > 0) sb.append(" | ");
+                sorted.get(i).append(sb);
+            }
+            return sb.toString();
+        }
+    }
+
+    /* The types of a group with the same other stem; only the most frequent are kept. */
+    private static final class Branch {
+        final String stem;
+        final List<String> types = new ArrayList<>(TYPES_PER_STEM);
+        final List<Long> counts = new ArrayList<>(TYPES_PER_STEM);
+        int typeCount;
+        long tokens;
+
+        Branch(String stem) {
+            this.stem = stem;
+        }
+
+        void add(String type, long count) {
+            typeCount++;
+            tokens += count;
+            int at = 0;
+            while (at < counts.size() && counts.get(at) >= count) at++;
+            if (at == TYPES_PER_STEM) return;
+            types.add(at, type);
+            counts.add(at, count);
+            if (types.size() > TYPES_PER_STEM) {
+                types.remove(TYPES_PER_STEM);
+                counts.remove(TYPES_PER_STEM);
+            }
+        }
+
+        void append(StringBuilder sb) {
+            sb.append(stem).append(" (").append(tokens).append(')');
+            for (int i = 0; i < types.size(); i++) {
+                sb.append(i == 0 ? " " : ", ").append(types.get(i)).append(" (").append(counts.get(i)).append(')');
+            }
+            if (typeCount > types.size()) {
+                sb.append(", ").append(typeCount - types.size()).append(" more");
+            }
+        }
+    }
+
+    /** The differences between the two versions. */
+    static final class Report {
+        final int examples;
+        long types;
+        long tokens;
+        long changedTypes;
+        long changedTokens;
+        long oldTerms;
+        long newTerms;
+        long splitGroups;
+        long splitTokens;
+        long mergedGroups;
+        long mergedTokens;
+        List<Group> largestSplit;
+        List<Group> largestMerged;
+        int runs;
+
+        Report(int examples) {
+            this.examples = examples;
+        }
+
+        void type(long count, boolean sameStem) {
+            types++;
+            tokens += count;
+            if (!sameStem) {
+                changedTypes++;
+                changedTokens += count;
+            }
+        }
+
+        void groups(GroupScanner split, GroupScanner merged, int runs) {
+            oldTerms = split.groups;
+            splitGroups = split.changedGroups;
+            splitTokens = split.changedTokens;
+            largestSplit = split.largest();
+            newTerms = merged.groups;
+            mergedGroups = merged.changedGroups;
+            mergedTokens = merged.changedTokens;
+            largestMerged = merged.largest();
+            this.runs = runs;
+        }
+
+        void write(Writer writer, Language language, StemmerVersion oldVersion, StemmerVersion newVersion)
+                throws IOException {
+            writer.write(String.format(Locale.ROOT,
+                    "%s stemmer%n  old: %s%n  new: %s%n%n"
+                    + "Types: %,d (%,d tokens)%n"
+                    + "Types with a new stem: %,d (%,d tokens, %.2f%% of tokens)%n"
+                    + "Index terms (distinct stems): %,d -> %,d (%+,d, %+.2f%%)%n"
+                    + "Groups split: %,d (%,d tokens)%n"
+                    + "Groups merged: %,d (%,d tokens)%n",
+                    language.name().toLowerCase(Locale.ROOT), oldVersion, newVersion,
+                    types, tokens,
+                    changedTypes, changedTokens, percent(changedTokens, tokens),
+                    oldTerms, newTerms, newTerms - oldTerms, percent(newTerms - oldTerms, oldTerms),
+                    splitGroups, splitTokens,
+                    mergedGroups, mergedTokens));
+            writeGroups(writer, "Largest split groups (old stem: new stems and their types)", largestSplit);
+            writeGroups(writer, "Largest merged groups (new stem: old stems and their types)", largestMerged);
+        }
+
+        private static void writeGroups(Writer writer, String title, List<Group> groups) throws IOException {
+            if (groups.isEmpty()) return;
+            writer.write(String.format(Locale.ROOT, "%n%s:%n", title));
+            for (Group group : groups) {
+                writer.write("  ");
+                writer.write(group.toString());
+                writer.write(System.lineSeparator());
+            }
+        }
+
+        private static double percent(long part, long total) {
+            return total == 0 ? 0 : 100.0 * part / total;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.util.automaton.Automaton;
+import org.wikimedia.search.extra.analysis.common.BatchStemmer;
+import org.wikimedia.search.extra.analysis.common.InPlaceStemmer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * One side of a {@link StemmerDiff}: a stemmer with a given rule file, or a stemmer from
+ * another build of the plugin.
+ */
+abstract class StemmerVersion {
+
+    private final String description;
+
+    StemmerVersion(String description) {
+        this.description = description;
+    }
+
+    /**
+     * The stemmer of this build with the given rule file, or with the shipped rules if it is
+     * null.
+     */
+    static StemmerVersion withRules(Language language, Path rules) throws IOException {
+        InPlaceStemmer stemmer = language.stemmer(rules);
+        return of(stemmer, rules == null ? "shipped rules" : "rules from " + rules);
+    }
+
+    static StemmerVersion of(InPlaceStemmer stemmer, String description) {
+        return new StemmerVersion(description) {
+            @Override
+            void stemAll(String[] words, String[] stems, ForkJoinPool pool) {
+                BatchStemmer.stemAll(stemmer, words, stems, pool);
+            }
+        };
+    }
+
+    /**
+     * The stemmer of another build of the plugin, such as the jars of a released version. It
+     * is loaded in its own class loader, so it doesn't see the classes of this build, and is
+     * called through its {@code stemWord(String)} method, which all versions have. The Lucene
+     * jars of this build are added after the given classpath.
+     *
+     * @param classpath jars or class directories, separated by {@link File#pathSeparator}
+     */
+    @SuppressFBWarnings(value = "DP_CREATE_CLASSLOADER_INSIDE_DO_PRIVILEGED",
+            justification = "Command-line tool, which runs without a security manager.")
+    static StemmerVersion fromClasspath(Language language, String classpath) {
+        List<URL> urls = new ArrayList<>();
+        try {
+            for (String entry : classpath.split(File.pathSeparator)) {
+                if (!entry.isEmpty()) urls.add(Paths.get(entry).toUri().toURL());
+            }
+            urls.add(codeSource(CharArraySet.class));
+            urls.add(codeSource(Automaton.class));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid classpath [" + classpath + "]", e);
+        }
+        ClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader());
+        Method stemWord;
+        ThreadLocal<Object> stemmers;
+        try {
+            Class<?> stemmerClass = loader.loadClass(language.stemmerClass);
+            stemWord = stemmerClass.getMethod("stemWord", String.class);
+            // older stemmers are not known to be thread safe, so each thread gets its own
+            stemmers = ThreadLocal.withInitial(() -> newInstance(stemmerClass));
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IllegalArgumentException("No usable " + language.stemmerClass + " in [" + classpath + "]", e);
+        }
+        return new StemmerVersion("build from " + classpath) {
+            @Override
+            void stemAll(String[] words, String[] stems, ForkJoinPool pool) {
+                if (stems.length < words.length) {
+                    throw new IllegalArgumentException("Cannot stem " + words.length + " words into " + stems.length);
+                }
+                try {
+                    pool.submit(() -> IntStream.range(0, words.length).parallel().forEach(i ->
+                            stems[i] = words[i] == null ? null : invoke(stemWord, stemmers.get(), words[i]))).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while stemming", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Cannot stem with " + language.stemmerClass, e.getCause());
+                }
+            }
+        };
+    }
+
+    private static URL codeSource(Class<?> clazz) throws MalformedURLException {
+        try {
+            return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toUri().toURL();
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+    }
+
+    private static Object newInstance(Class<?> stemmerClass) {
+        try {
+            return stemmerClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create a " + stemmerClass.getName(), e);
+        }
+    }
+
+    private static String invoke(Method stemWord, Object stemmer, String word) {
+        try {
+            return (String) stemWord.invoke(stemmer, word);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot stem [" + word + "]", e);
+        }
+    }
+
+    /**
+     * Stem the words, in parallel on the pool, into the first {@code words.length} entries of
+     * {@code stems}.
+     */
+    abstract void stemAll(String[] words, String[] stems, ForkJoinPool pool);
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
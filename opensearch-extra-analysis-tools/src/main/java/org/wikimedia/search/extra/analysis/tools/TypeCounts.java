@@ -0,0 +1,189 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Counts of distinct strings (types) in bounded memory. Once {@code maxTypes} types are held,
+ * they are written to a temporary file sorted by type (a run), and the runs are merged when
+ * the counts are read back, in order.
+ *
+ * <p>Not thread safe.
+ */
+final class TypeCounts implements Closeable {
+
+    /** Receives types in order, each with its total count. */
+    interface Visitor {
+        void visit(String type, long count) throws IOException;
+    }
+
+    private final int maxTypes;
+    private final Path tempDir;
+    private final Map<String, long[]> counts = new HashMap<>();
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param maxTypes the number of types to hold in memory before writing them to a run
+     * @param tempDir where to write the runs
+     */
+    TypeCounts(int maxTypes, Path tempDir) {
+        if (maxTypes < 1) {
+            throw new IllegalArgumentException("maxTypes must be positive but was " + maxTypes);
+        }
+        this.maxTypes = maxTypes;
+        this.tempDir = tempDir;
+    }
+
+    void add(String type, long count) throws IOException {
+        long[] total = counts.get(type);
+        if (total != null) {
+            total[0] += count;
+            return;
+        }
+        counts.put(type, new long[] {count});
+        if (counts.size() >= maxTypes) spill();
+    }
+
+    void addAll(Map<String, long[]> other) throws IOException {
+        for (Map.Entry<String, long[]> entry : other.entrySet()) {
+            add(entry.getKey(), entry.getValue()[0]);
+        }
+    }
+
+    /** Number of runs written so far. */
+    int runs() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        Path run = Files.createTempFile(tempDir, "types-", ".run");
+        runs.add(run);
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (String type : sortedTypes()) {
+                byte[] bytes = type.getBytes(UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeLong(counts.get(type)[0]);
+            }
+        }
+        counts.clear();
+    }
+
+    private List<String> sortedTypes() {
+        List<String> types = new ArrayList<>(counts.keySet());
+        Collections.sort(types);
+        return types;
+    }
+
+    /**
+     * Visit all the types in order, each once with its total count, merging the runs. The
+     * types in memory are visited too, but aren't written to a run.
+     */
+    void forEachSorted(Visitor visitor) throws IOException {
+        PriorityQueue<Source> queue = new PriorityQueue<>((a, b) -> a.type.compareTo(b.type));
+        List<RunSource> open = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                RunSource source = new RunSource(run);
+                open.add(source);
+                if (source.next()) queue.add(source);
+            }
+            Source memory = new MemorySource(sortedTypes().iterator(), counts);
+            if (memory.next()) queue.add(memory);
+
+            while (!queue.isEmpty()) {
+                Source source = queue.poll();
+                String type = source.type;
+                long count = source.count;
+                if (source.next()) queue.add(source);
+                // the same type can be in every run, once each
+                while (!queue.isEmpty() && queue.peek().type.equals(type)) {
+                    Source same = queue.poll();
+                    count += same.count;
+                    if (same.next()) queue.add(same);
+                }
+                visitor.visit(type, count);
+            }
+        } finally {
+            for (RunSource source : open) {
+                source.in.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        counts.clear();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    /* Types in order, with their counts. */
+    private abstract static class Source {
+        String type;
+        long count;
+
+        /* Move to the next type, returning false if there are no more. */
+        abstract boolean next() throws IOException;
+    }
+
+    private static final class MemorySource extends Source {
+        private final Iterator<String> types;
+        private final Map<String, long[]> counts;
+
+        MemorySource(Iterator<String> types, Map<String, long[]> counts) {
+            this.types = types;
+            this.counts = counts;
+        }
+
+        @Override
+        boolean next() {
+            if (!types.hasNext()) return false;
+            type = types.next();
+            count = counts.get(type)[0];
+            return true;
+        }
+    }
+
+    private static final class RunSource extends Source {
+        final DataInputStream in;
+
+        RunSource(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            type = new String(bytes, UTF_8);
+            count = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wikimedia.search.extra.analysis.esperanto.EsperantoStemmer;
+import org.wikimedia.search.extra.analysis.serbian.LjubesicPandzicStemmer;
+
+public class CorpusStemmerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private List<String> stem(Language language, Path input, int chunkSize, int threads, int maxTypes, int minCount)
+            throws IOException {
+        Path output = temp.newFile().toPath();
+        CorpusReader reader = new CorpusReader(input, chunkSize, threads);
+        try (TypeCounts counts = new TypeCounts(maxTypes, temp.newFolder().toPath())) {
+            reader.countTypes(counts);
+            CorpusStemmer.stem(counts, language.stemmer(null), threads, minCount, output);
+        }
+        return Files.readAllLines(output, UTF_8);
+    }
+
+    @Test
+    public void testSerbianDump() throws IOException {
+        Path input = temp.newFile().toPath();
+        Files.write(input, ("<doc id=\"1\" url=\"https://sr.wikipedia.org/wiki?curid=1\" title=\"Добро\">\n"
+                + "Добро дошли на Википедију.\n"
+                + "Dobro došli na Vikipediju! Dobro!\n"
+                + "</doc>\n").getBytes(UTF_8));
+        assertThat(stem(Language.SERBIAN, input, 1 << 20, 1, 100, 1)).containsExactly(
+                "dobro\tdobr\t2",
+                "došli\tdošl\t1",
+                "na\tna\t1",
+                "vikipediju\tvikipedij\t1",
+                "википедију\tvikipedij\t1",
+                "добро\tdobr\t1",
+                "дошли\tdošl\t1",
+                "на\tna\t1");
+        assertThat(stem(Language.SERBIAN, input, 1 << 20, 1, 100, 2)).containsExactly("dobro\tdobr\t2");
+    }
+
+    @Test
+    public void testChunksThreadsAndRunsDontChangeTheTable() throws IOException {
+        String[] words = {"bonvenon", "al", "vikipedio", "hundoj", "ĉu", "dekdu", "ŝi", "parolis", "1960aj", "Ĝardeno"};
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append(words[random.nextInt(words.length)]);
+            // made-up words, so that there are more types than fit in memory
+            if (random.nextInt(4) == 0) text.append(random.nextInt(300));
+            text.append(i % 17 == 16 ? "\n" : " ");
+        }
+        Path input = temp.newFile().toPath();
+        Files.write(input, text.toString().getBytes(UTF_8));
+
+        List<String> expected = stem(Language.ESPERANTO, input, 1 << 20, 1, 1 << 20, 1);
+        assertThat(stem(Language.ESPERANTO, input, 997, 3, 50, 1)).isEqualTo(expected);
+        assertThat(stem(Language.ESPERANTO, input, 1 << 20, 2, 50, 1)).isEqualTo(expected);
+
+        EsperantoStemmer stemmer = new EsperantoStemmer();
+        long tokens = 0;
+        for (String line : expected) {
+            String[] fields = line.split("\t");
+            assertThat(fields[1]).isEqualTo(stemmer.stemWord(fields[0]));
+            tokens += Long.parseLong(fields[2]);
+        }
+        assertThat(tokens).isEqualTo(20_000);
+    }
+
+    @Test
+    public void testChunkEnd() {
+        ByteBuffer lines = ByteBuffer.wrap("prvi red\ndrugi red".getBytes(UTF_8));
+        assertThat(CorpusReader.chunkEnd(lines)).isEqualTo(9);
+        ByteBuffer words = ByteBuffer.wrap("prvi drugi".getBytes(UTF_8));
+        assertThat(CorpusReader.chunkEnd(words)).isEqualTo(5);
+        // no whitespace: don't split the last char, ž
+        ByteBuffer word = ByteBuffer.wrap("muž".getBytes(UTF_8));
+        assertThat(CorpusReader.chunkEnd(word)).isEqualTo(2);
+    }
+
+    @Test
+    public void testCustomRules() throws IOException {
+        Path rules = temp.newFile().toPath();
+        Files.write(rules, "version 1\n[stop_words]\n[transformations]\n[word_rules]\n.+\tu\n".getBytes(UTF_8));
+        LjubesicPandzicStemmer stemmer = (LjubesicPandzicStemmer) Language.SERBIAN.stemmer(rules);
+        assertThat(stemmer.stemWord("dobro")).isEqualTo("dobro");
+        assertThat(stemmer.stemWord("vikipediju")).isEqualTo("vikipedij");
+    }
+}
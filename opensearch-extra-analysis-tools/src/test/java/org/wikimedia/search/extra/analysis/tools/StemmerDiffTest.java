@@ -0,0 +1,124 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wikimedia.search.extra.analysis.common.InPlaceStemmer;
+import org.wikimedia.search.extra.analysis.serbian.LjubesicPandzicStemmer;
+
+public class StemmerDiffTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /* Strips one of the given one-letter endings from words of more than three letters. */
+    private static StemmerVersion stripping(String endings) {
+        return StemmerVersion.of(new InPlaceStemmer() {
+            @Override
+            public int bufferLength(int length) {
+                return length;
+            }
+
+            @Override
+            public int stem(char[] buffer, int length) {
+                return length > 3 && endings.indexOf(buffer[length - 1]) >= 0 ? length - 1 : length;
+            }
+        }, "strips " + endings);
+    }
+
+    private StemmerDiff.Report diff(StemmerVersion oldVersion, StemmerVersion newVersion, int maxEntries)
+            throws IOException {
+        try (TypeCounts counts = new TypeCounts(maxEntries, temp.newFolder().toPath())) {
+            counts.add("kuca", 3);
+            counts.add("kuci", 2);
+            counts.add("kucu", 1);
+            counts.add("rada", 4);
+            counts.add("radu", 1);
+            return StemmerDiff.diff(counts, oldVersion, newVersion, 2, maxEntries, temp.newFolder().toPath(), 10);
+        }
+    }
+
+    @Test
+    public void testSplitAndMerged() throws IOException {
+        for (int maxEntries : new int[] {100, 2}) {
+            StemmerDiff.Report report = diff(stripping("ai"), stripping("au"), maxEntries);
+            assertThat(report.types).isEqualTo(5);
+            assertThat(report.tokens).isEqualTo(11);
+            // kuci, kucu and radu
+            assertThat(report.changedTypes).isEqualTo(3);
+            assertThat(report.changedTokens).isEqualTo(4);
+            // kuc, kucu, rad, radu -> kuc, kuci, rad
+            assertThat(report.oldTerms).isEqualTo(4);
+            assertThat(report.newTerms).isEqualTo(3);
+            assertThat(report.splitGroups).isEqualTo(1);
+            assertThat(report.splitTokens).isEqualTo(5);
+            assertThat(report.largestSplit).extracting(Object::toString)
+                .containsExactly("kuc (5): kuc (3) kuca (3) | kuci (2) kuci (2)");
+            assertThat(report.mergedGroups).isEqualTo(2);
+            assertThat(report.mergedTokens).isEqualTo(9);
+            assertThat(report.largestMerged).extracting(Object::toString)
+                .containsExactly("rad (5): rad (4) rada (4) | radu (1) radu (1)",
+                        "kuc (4): kuc (3) kuca (3) | kucu (1) kucu (1)");
+            assertThat(report.runs > 0).isEqualTo(maxEntries == 2);
+        }
+    }
+
+    @Test
+    public void testNoChange() throws IOException {
+        StemmerDiff.Report report = diff(stripping("ai"), stripping("ia"), 100);
+        assertThat(report.changedTypes).isZero();
+        assertThat(report.oldTerms).isEqualTo(report.newTerms).isEqualTo(4);
+        assertThat(report.splitGroups).isZero();
+        assertThat(report.mergedGroups).isZero();
+
+        StringWriter writer = new StringWriter();
+        report.write(writer, Language.SERBIAN, stripping("ai"), stripping("ia"));
+        assertThat(writer.toString())
+            .contains("Index terms (distinct stems): 4 -> 4 (+0, +0.00%)")
+            .doesNotContain("Largest");
+    }
+
+    @Test
+    public void testOtherBuild() throws IOException, URISyntaxException {
+        // this build's own classes, loaded apart from the test's
+        String classpath = location(LjubesicPandzicStemmer.class) + File.pathSeparator + location(InPlaceStemmer.class);
+        StemmerVersion otherBuild = StemmerVersion.fromClasspath(Language.SERBIAN, classpath);
+        Path input = temp.newFile().toPath();
+        Files.write(input, "Добро дошли на Википедију, slobodnu enciklopediju koju svako može da uređuje."
+                .getBytes(UTF_8));
+        try (TypeCounts counts = new TypeCounts(100, temp.newFolder().toPath())) {
+            new CorpusReader(input, 1 << 20, 1).countTypes(counts);
+            StemmerDiff.Report report = StemmerDiff.diff(counts, StemmerVersion.withRules(Language.SERBIAN, null),
+                    otherBuild, 1, 100, temp.newFolder().toPath(), 10);
+            assertThat(report.types).isEqualTo(11);
+            assertThat(report.changedTypes).isZero();
+        }
+    }
+
+    private static String location(Class<?> clazz) throws URISyntaxException {
+        return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    @Test
+    public void testReadTable() throws IOException {
+        Path table = temp.newFile().toPath();
+        Files.write(table, "dobro\tdobr\t2\nна\tna\t1\n".getBytes(UTF_8));
+        try (TypeCounts counts = new TypeCounts(100, temp.newFolder().toPath())) {
+            StemmerDiff.readTable(table, counts);
+            StringBuilder read = new StringBuilder();
+            counts.forEachSorted((type, count) -> read.append(type).append(' ').append(count).append(';'));
+            assertThat(read).hasToString("dobro 2;на 1;");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.wikimedia.search.extra.analysis.tools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TypeCountsTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private static Map<String, Long> read(TypeCounts counts) throws IOException {
+        Map<String, Long> read = new TreeMap<>();
+        List<String> order = new ArrayList<>();
+        counts.forEachSorted((type, count) -> {
+            order.add(type);
+            assertThat(read.put(type, count)).as("visited twice: " + type).isNull();
+        });
+        assertThat(order).isSorted();
+        return read;
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        try (TypeCounts counts = new TypeCounts(100, temp.getRoot().toPath())) {
+            counts.add("kuća", 2);
+            counts.add("je", 1);
+            counts.add("kuća", 3);
+            assertThat(read(counts)).containsExactly(entry("je", 1L), entry("kuća", 5L));
+            assertThat(counts.runs()).isZero();
+        }
+    }
+
+    @Test
+    public void testSpillAndMerge() throws IOException {
+        Random random = new Random(42);
+        Map<String, Long> expected = new TreeMap<>();
+        try (TypeCounts counts = new TypeCounts(50, temp.getRoot().toPath())) {
+            for (int i = 0; i < 5000; i++) {
+                String type = Integer.toString(random.nextInt(400), 36) + (random.nextBoolean() ? "ć" : "");
+                long count = 1 + random.nextInt(3);
+                counts.add(type, count);
+                expected.merge(type, count, Long::sum);
+            }
+            assertThat(counts.runs()).isGreaterThan(10);
+            assertThat(read(counts)).isEqualTo(expected);
+        }
+        // the runs are deleted on close
+        assertThat(temp.getRoot().list()).isEmpty();
+    }
+}